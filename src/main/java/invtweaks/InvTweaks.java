@@ -7,6 +7,8 @@ import invtweaks.api.container.ContainerSection;
 import invtweaks.container.ContainerSectionManager;
 import invtweaks.container.DirectContainerManager;
 import invtweaks.container.IContainerManager;
+import invtweaks.container.RearrangementPlan;
+import invtweaks.forge.ClientProxy;
 import invtweaks.forge.InvTweaksMod;
 import invtweaks.integration.ItemListChecker;
 import net.minecraft.client.Minecraft;
@@ -16,8 +18,6 @@ import net.minecraft.client.gui.GuiScreen;
 import net.minecraft.client.gui.inventory.GuiContainer;
 import net.minecraft.client.gui.inventory.GuiCrafting;
 import net.minecraft.client.gui.inventory.GuiInventory;
-import net.minecraft.enchantment.Enchantment;
-import net.minecraft.enchantment.EnchantmentHelper;
 import net.minecraft.init.Items;
 import net.minecraft.init.SoundEvents;
 import net.minecraft.inventory.Container;
@@ -94,6 +94,7 @@ public class InvTweaks extends InvTweaksObfuscation {
      */
     private long sortingKeyPressedDate = 0;
     private boolean sortKeyDown = false;
+    private boolean simulateSortKeyDown = false;
     private boolean sortKeyEnabled = true;
     private boolean textboxMode = false;
 
@@ -105,6 +106,17 @@ public class InvTweaks extends InvTweaksObfuscation {
 
     private final ItemListChecker itemListChecker = new ItemListChecker();
 
+    /**
+     * Enchantment summaries of the stacks compared during the current tick.
+     */
+    @NotNull
+    private final InvTweaksEnchantmentCache enchantmentCache = new InvTweaksEnchantmentCache();
+    /**
+     * Collation keys of the custom names compared during the current tick, created when first needed.
+     */
+    @Nullable
+    private InvTweaksNameCollator nameCollator = null;
+
     /**
      * Creates an instance of the mod, and loads the configuration from the files, creating them if necessary.
      */
@@ -206,6 +218,7 @@ public class InvTweaks extends InvTweaksObfuscation {
      */
     public void onTickInGame() {
         synchronized(this) {
+            InvTweaksHandlerSorting.cancelPendingSort();
             if(!onTick()) {
                 return;
             }
@@ -227,6 +240,7 @@ public class InvTweaks extends InvTweaksObfuscation {
         }
 
         synchronized(this) {
+            InvTweaksHandlerSorting.resumePendingSort(); // Before anything can start another sort
             handleMiddleClick(guiScreen); // Called before the rest to be able to trigger config reload
             if(!onTick()) {
                 return;
@@ -291,7 +305,7 @@ public class InvTweaks extends InvTweaksObfuscation {
         }
         @Nullable InvTweaksConfig config = cfgManager.getConfig();
         // Handle option to disable this feature
-        if(cfgManager.getConfig().getProperty(InvTweaksConfig.PROP_ENABLE_SORTING_ON_PICKUP).equals("false")) {
+        if(!config.getSettings().isSortingOnPickupEnabled()) {
             itemPickupPending = false;
             return;
         }
@@ -320,7 +334,7 @@ public class InvTweaks extends InvTweaksObfuscation {
                 @NotNull ItemStack stack = containerMgr.getItemStack(currentSlot);
 
                 // TODO: It looks like Mojang changed the internal name type to ResourceLocation. Evaluate how much of a pain that will be.
-                List<IItemTreeItem> items = tree.getItems(stack.getItem().getRegistryName().toString(), stack.getItemDamage());
+                List<IItemTreeItem> items = tree.getItems(stack.getItem(), stack.getItemDamage(), null);
 
                 List<Integer> preferredPositions = config.getRules().stream().filter(rule -> tree.matches(items, rule.getKeyword()))
                         .flatMapToInt(e -> Arrays.stream(e.getPreferredSlots()))
@@ -374,6 +388,64 @@ public class InvTweaks extends InvTweaksObfuscation {
         return compareItems(i, j, getItemOrder(i), getItemOrder(j));
     }
 
+    /**
+     * Sort keys of the given stacks, in the order of {@link #compareItems(ItemStack, ItemStack)}: each stack gets its
+     * rank in the batch, equivalent stacks sharing the same rank and empty stacks coming last. Keys are only comparable
+     * within a batch. Doesn't touch any GUI state, so it can be called from another thread as long as the stacks aren't
+     * modified meanwhile.
+     */
+    @NotNull
+    public long[] computeSortKeys(@NotNull List<ItemStack> stacks) {
+        @NotNull long[] keys = new long[stacks.size()];
+        @Nullable InvTweaksConfig config = cfgManager.getConfig();
+        if(config == null || stacks.isEmpty()) {
+            return keys;
+        }
+
+        // Every key is extracted once, then the batch is sorted on integers only
+        @NotNull InvTweaksItemTree tree = config.getTree();
+        @NotNull List<ItemStack> batch = new ArrayList<>(stacks);
+        @NotNull InvTweaksSortKeys sortKeys = new InvTweaksSortKeys(batch, config.getSettings().isToolDamageInverted());
+        @NotNull int[] orders = new int[batch.size()];
+        @NotNull Integer[] indices = new Integer[batch.size()];
+        for(int i = 0; i < indices.length; i++) {
+            @NotNull ItemStack stack = batch.get(i);
+            orders[i] = stack.isEmpty() ? Integer.MAX_VALUE : getItemOrder(tree, stack);
+            indices[i] = i;
+        }
+        Arrays.sort(indices, (a, b) -> sortKeys.compare(a, b, orders[a], orders[b]));
+
+        long rank = 0;
+        for(int i = 0; i < indices.length; i++) {
+            if(i > 0 && sortKeys.compare(indices[i - 1], indices[i], orders[indices[i - 1]], orders[indices[i]]) != 0) {
+                rank++;
+            }
+            keys[indices[i]] = rank;
+        }
+        return keys;
+    }
+
+    /**
+     * Sorts the given list in place, in the order of {@link #compareItems(ItemStack, ItemStack)}. Stable, and safe to
+     * call from another thread (see {@link #computeSortKeys(List)}).
+     */
+    public void sortStacks(@NotNull List<ItemStack> stacks) {
+        @NotNull long[] keys = computeSortKeys(stacks);
+        @NotNull Integer[] indices = new Integer[keys.length];
+        for(int i = 0; i < indices.length; i++) {
+            indices[i] = i;
+        }
+        Arrays.sort(indices, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        @NotNull ItemStack[] sorted = new ItemStack[indices.length];
+        for(int i = 0; i < indices.length; i++) {
+            sorted[i] = stacks.get(indices[i]);
+        }
+        for(int i = 0; i < sorted.length; i++) {
+            stacks.set(i, sorted[i]);
+        }
+    }
+
     int compareItems(@NotNull ItemStack i, @NotNull ItemStack j, int orderI, int orderJ) {
         if(j.isEmpty()) {
             return -1;
@@ -396,57 +468,27 @@ public class InvTweaks extends InvTweaksObfuscation {
                             @NotNull String jDisplayName = j.getDisplayName();
 
                             if(!iDisplayName.equals(jDisplayName)) {
-                                return iDisplayName.compareTo(jDisplayName);
+                                return getNameCollator().compare(iDisplayName, jDisplayName);
                             }
                         }
                     }
 
-                    @NotNull Map<Enchantment, Integer> iEnchs = EnchantmentHelper.getEnchantments(i);
-                    @NotNull Map<Enchantment, Integer> jEnchs = EnchantmentHelper.getEnchantments(j);
-                    if(iEnchs.size() == jEnchs.size()) {
-                        int iEnchMaxId = 0, iEnchMaxLvl = 0;
-                        int jEnchMaxId = 0, jEnchMaxLvl = 0;
-
-                        // TODO: This is really arbitrary but there's not really a good way to do this generically.
-                        for(@NotNull Map.Entry<Enchantment, Integer> ench : iEnchs.entrySet()) {
-                            int enchId = Enchantment.getEnchantmentID(ench.getKey());
-                            if(ench.getValue() > iEnchMaxLvl) {
-                                iEnchMaxId = enchId;
-                                iEnchMaxLvl = ench.getValue();
-                            } else if(ench.getValue() == iEnchMaxLvl && enchId > iEnchMaxId) {
-                                iEnchMaxId = enchId;
-                            }
-                        }
-
-                        for(@NotNull Map.Entry<Enchantment, Integer> ench : jEnchs.entrySet()) {
-                            int enchId = Enchantment.getEnchantmentID(ench.getKey());
-                            if(ench.getValue() > jEnchMaxLvl) {
-                                jEnchMaxId = enchId;
-                                jEnchMaxLvl = ench.getValue();
-                            } else if(ench.getValue() == jEnchMaxLvl && enchId > jEnchMaxId) {
-                                jEnchMaxId = enchId;
-                            }
-                        }
-
-                        if(iEnchMaxId == jEnchMaxId) {
-                            if(iEnchMaxLvl == jEnchMaxLvl) {
-                                if(i.getItemDamage() != j.getItemDamage()) {
-                                    if(i.isItemStackDamageable() && !getConfigManager().getConfig().getProperty(InvTweaksConfig.PROP_INVERT_TOOL_DAMAGE).equals(InvTweaksConfig.VALUE_TRUE)) {
-                                        return j.getItemDamage() - i.getItemDamage();
-                                    } else {
-                                        return i.getItemDamage() - j.getItemDamage();
-                                    }
-                                } else {
-                                    return j.getCount() - i.getCount();
-                                }
+                    // Most enchantments first, then by the strongest enchantment: highest ID first, then highest level
+                    // TODO: This is really arbitrary but there's not really a good way to do this generically.
+                    long iEnchs = getEnchantmentSummary(i);
+                    long jEnchs = getEnchantmentSummary(j);
+                    if(iEnchs == jEnchs) {
+                        if(i.getItemDamage() != j.getItemDamage()) {
+                            if(i.isItemStackDamageable() && !getConfigManager().getConfig().getSettings().isToolDamageInverted()) {
+                                return j.getItemDamage() - i.getItemDamage();
                             } else {
-                                return jEnchMaxLvl - iEnchMaxLvl;
+                                return i.getItemDamage() - j.getItemDamage();
                             }
                         } else {
-                            return jEnchMaxId - iEnchMaxId;
+                            return j.getCount() - i.getCount();
                         }
                     } else {
-                        return jEnchs.size() - iEnchs.size();
+                        return Long.compare(jEnchs, iEnchs);
                     }
                 } else {
                     // TODO: It looks like Mojang changed the internal name type to ResourceLocation. Evaluate how much of a pain that will be.
@@ -459,6 +501,28 @@ public class InvTweaks extends InvTweaksObfuscation {
         }
     }
 
+    /**
+     * Comparisons made on the client thread share a cache, cleared on every tick. Other threads don't cache anything.
+     */
+    private long getEnchantmentSummary(@NotNull ItemStack stack) {
+        return mc.isCallingFromMinecraftThread() ? enchantmentCache.getSummary(stack) :
+                InvTweaksEnchantmentCache.summarize(stack);
+    }
+
+    /**
+     * Same as {@link #getEnchantmentSummary(ItemStack)}: the collator is shared on the client thread for a tick.
+     */
+    @NotNull
+    private InvTweaksNameCollator getNameCollator() {
+        if(!mc.isCallingFromMinecraftThread()) {
+            return new InvTweaksNameCollator();
+        }
+        if(nameCollator == null) {
+            nameCollator = new InvTweaksNameCollator();
+        }
+        return nameCollator;
+    }
+
     public void setItemPickupPending(boolean value) {
         itemPickupPending = value;
         itemPickupTimeout = 5;
@@ -511,6 +575,8 @@ public class InvTweaks extends InvTweaksObfuscation {
         printQueuedMessages();
 
         tickNumber++;
+        enchantmentCache.clear();
+        nameCollator = null; // Also picks up language changes
 
         if(mc.playerController.isSpectator()) {
             return false;
@@ -541,6 +607,16 @@ public class InvTweaks extends InvTweaksObfuscation {
             sortKeyDown = false;
         }
 
+        // Handle sort simulation key
+        if(isSimulateSortShortcutDown()) {
+            if(!simulateSortKeyDown) {
+                simulateSortKeyDown = true;
+                onSimulateSortKeyPressed();
+            }
+        } else {
+            simulateSortKeyDown = false;
+        }
+
         // Handle config switch
         handleConfigSwitch();
 
@@ -624,6 +700,34 @@ public class InvTweaks extends InvTweaksObfuscation {
 
     }
 
+    /**
+     * Logs what sorting the inventory (and the open chest, if any) would cost, without sorting anything.
+     */
+    private void onSimulateSortKeyPressed() {
+        logSortingPlan(ContainerSection.INVENTORY, SortingMethod.INVENTORY, InvTweaksConst.INVENTORY_ROW_SIZE);
+
+        @Nullable GuiScreen guiScreen = getCurrentScreen();
+        if(isGuiContainer(guiScreen) && isValidChest(((GuiContainer) guiScreen).inventorySlots)) {
+            logSortingPlan(ContainerSection.CHEST, SortingMethod.DEFAULT, getContainerRowSize((GuiContainer) guiScreen));
+        }
+    }
+
+    private void logSortingPlan(@NotNull ContainerSection section, SortingMethod method, int rowSize) {
+        try {
+            @Nullable RearrangementPlan plan = new InvTweaksHandlerSorting(mc, cfgManager.getConfig(), section, method,
+                    rowSize).simulate();
+            if(plan == null) {
+                logInGame(String.format(I18n.format("invtweaks.sort.simulate.failed"), section), true);
+            } else {
+                logInGame(String.format(I18n.format("invtweaks.sort.simulate"), section, plan.getClickCount(),
+                        plan.getSwapCount(), plan.getTransferCount(), plan.getMovedStackCount(),
+                        plan.getPacketCount(), plan.getEstimatedTicks()), true);
+            }
+        } catch(Exception e) {
+            logInGameError("invtweaks.sort.simulate.error", e);
+        }
+    }
+
     @SuppressWarnings("unused")
     private void handleSorting(GuiScreen guiScreen) {
         @NotNull ItemStack selectedItem = ItemStack.EMPTY;
@@ -678,10 +782,9 @@ public class InvTweaks extends InvTweaksObfuscation {
                 } else {
                     // Item
                     int itemMaxDamage = currentStack.getMaxDamage();
-                    int autoRefillThreshhold = config.getIntProperty(InvTweaksConfig.PROP_AUTO_REFILL_DAMAGE_THRESHHOLD);
+                    int autoRefillThreshhold = config.getSettings().getAutoRefillDamageThreshhold();
                     if (canToolBeReplaced(currentStackDamage, itemMaxDamage, autoRefillThreshhold) && config
-                            .getProperty(InvTweaksConfig.PROP_AUTO_REFILL_BEFORE_BREAK)
-                            .equals(InvTweaksConfig.VALUE_TRUE) && config
+                            .getSettings().isAutoRefillBeforeBreak() && config
                             .isAutoRefillEnabled(storedStackId, storedStackDamage)) {
                         // Trigger auto-refill before the tool breaks
                         try {
@@ -714,8 +817,7 @@ public class InvTweaks extends InvTweaksObfuscation {
             @Nullable InvTweaksConfig config = cfgManager.getConfig();
 
             // Check that middle click sorting is allowed
-            if(config.getProperty(InvTweaksConfig.PROP_ENABLE_MIDDLE_CLICK)
-                    .equals(InvTweaksConfig.VALUE_TRUE) && isGuiContainer(guiScreen)) {
+            if(config.getSettings().isMiddleClickEnabled() && isGuiContainer(guiScreen)) {
 
                 @NotNull GuiContainer guiContainer = (GuiContainer) guiScreen;
                 Container container = guiContainer.inventorySlots;
@@ -742,7 +844,7 @@ public class InvTweaks extends InvTweaksObfuscation {
                             playClick();
 
                             long timestamp = System.currentTimeMillis();
-                            if(timestamp - chestAlgorithmClickTimestamp > InvTweaksConst.CHEST_ALGORITHM_SWAP_MAX_INTERVAL || getContainerRowSize(guiContainer) > 9) {
+                            if(timestamp - chestAlgorithmClickTimestamp > InvTweaksConst.CHEST_ALGORITHM_SWAP_MAX_INTERVAL) {
                                 chestAlgorithm = SortingMethod.DEFAULT;
                             }
                             try {
@@ -900,7 +1002,7 @@ public class InvTweaks extends InvTweaksObfuscation {
                                     customTextureAvailable));
 
                     // Sorting buttons
-                    if(!config.getProperty(InvTweaksConfig.PROP_SHOW_CHEST_BUTTONS).equals("false")) {
+                    if(config.getSettings().areChestButtonsShown()) {
                         int rowSize = getContainerRowSize(guiContainer);
                         @NotNull GuiButton button = new InvTweaksGuiSortingButton(cfgManager, id++, (isChestWayTooBig) ? x + 22 : x - 37,
                                 (isChestWayTooBig) ? y + 38 : y, w, h, "s", I18n.format("invtweaks.button.chest1.tooltip"),
@@ -908,23 +1010,21 @@ public class InvTweaks extends InvTweaksObfuscation {
                                 customTextureAvailable);
                         controlList.add(button);
 
-                        if(rowSize <= 9) {
-                             button = new InvTweaksGuiSortingButton(cfgManager, id++,
-                                    (isChestWayTooBig) ? x + 22 : x - 13,
-                                    (isChestWayTooBig) ? y + 12 : y, w, h, "h",
-                                    I18n.format(
-                                            "invtweaks.button.chest3.tooltip"),
-                                    SortingMethod.HORIZONTAL,
-                                    rowSize, customTextureAvailable);
-                            controlList.add(button);
-
-                            //noinspection UnusedAssignment (Using ++ for extensibility)
-                            button = new InvTweaksGuiSortingButton(cfgManager, id++, (isChestWayTooBig) ? x + 22 : x - 25,
-                                    (isChestWayTooBig) ? y + 25 : y, w, h, "v", I18n.format("invtweaks.button.chest2.tooltip"),
-                                    SortingMethod.VERTICAL, rowSize,
-                                    customTextureAvailable);
-                            controlList.add(button);
-                        }
+                        button = new InvTweaksGuiSortingButton(cfgManager, id++,
+                                (isChestWayTooBig) ? x + 22 : x - 13,
+                                (isChestWayTooBig) ? y + 12 : y, w, h, "h",
+                                I18n.format(
+                                        "invtweaks.button.chest3.tooltip"),
+                                SortingMethod.HORIZONTAL,
+                                rowSize, customTextureAvailable);
+                        controlList.add(button);
+
+                        //noinspection UnusedAssignment (Using ++ for extensibility)
+                        button = new InvTweaksGuiSortingButton(cfgManager, id++, (isChestWayTooBig) ? x + 22 : x - 25,
+                                (isChestWayTooBig) ? y + 25 : y, w, h, "v", I18n.format("invtweaks.button.chest2.tooltip"),
+                                SortingMethod.VERTICAL, rowSize,
+                                customTextureAvailable);
+                        controlList.add(button);
 
                     }
                 }
@@ -962,7 +1062,7 @@ public class InvTweaks extends InvTweaksObfuscation {
 
                 // The mouse has just been clicked,
                 // trigger a shortcut according to the pressed keys.
-                if(cfgManager.getConfig().getProperty(InvTweaksConfig.PROP_ENABLE_SHORTCUTS).equals("true")) {
+                if(cfgManager.getConfig().getSettings().areShortcutsEnabled()) {
                     cfgManager.getShortcutsHandler().handleShortcut();
                 }
             }
@@ -973,9 +1073,13 @@ public class InvTweaks extends InvTweaksObfuscation {
     }
 
     private int getItemOrder(@NotNull ItemStack itemStack) {
+        return getItemOrder(cfgManager.getConfig().getTree(), itemStack);
+    }
+
+    private static int getItemOrder(@NotNull IItemTree tree, @NotNull ItemStack itemStack) {
         // TODO: It looks like Mojang changed the internal name type to ResourceLocation. Evaluate how much of a pain that will be.
-        List<IItemTreeItem> items = cfgManager.getConfig().getTree().getItems(itemStack.getItem().getRegistryName().toString(),
-                itemStack.getItemDamage(), itemStack.getTagCompound());
+        List<IItemTreeItem> items = tree.getItems(itemStack.getItem(), itemStack.getItemDamage(),
+                itemStack.getTagCompound());
         return (items.size() > 0) ? items.get(0).getOrder() : Integer.MAX_VALUE;
     }
 
@@ -992,6 +1096,18 @@ public class InvTweaks extends InvTweaksObfuscation {
         }
     }
 
+    private boolean isSimulateSortShortcutDown() {
+        if(sortKeyEnabled && !textboxMode) {
+            int keyCode = ClientProxy.KEYBINDING_SIMULATE_SORT.getKeyCode();
+            if(keyCode > 0) {
+                return Keyboard.isKeyDown(keyCode);
+            } else if(keyCode < 0) {
+                return Mouse.isButtonDown(100 + keyCode);
+            }
+        }
+        return false;
+    }
+
     private boolean isTimeForPolling() {
         if(tickNumber - lastPollingTickNumber >= InvTweaksConst.POLLING_DELAY) {
             lastPollingTickNumber = tickNumber;
@@ -1036,8 +1152,7 @@ public class InvTweaks extends InvTweaksObfuscation {
     }
 
     private void playClick() {
-        if(!cfgManager.getConfig().getProperty(InvTweaksConfig.PROP_ENABLE_SOUNDS)
-                .equals(InvTweaksConfig.VALUE_FALSE)) {
+        if(cfgManager.getConfig().getSettings().areSoundsEnabled()) {
             mc.getSoundHandler()
                     .playSound(PositionedSoundRecord.getMasterRecord(SoundEvents.UI_BUTTON_CLICK, 1.0F));
         }
@@ -31,6 +31,7 @@ public class InvTweaksConfig {
     public static final String PROP_AUTO_REFILL_BEFORE_BREAK = "autoRefillBeforeBreak";
     public static final String PROP_AUTO_REFILL_DAMAGE_THRESHHOLD = "autoRefillDamageThreshhold";
     public static final String PROP_INVERT_TOOL_DAMAGE = "invertToolDamageSorting";
+    public static final String PROP_SORT_CLICKS_PER_TICK = "sortClicksPerTick";
     // Shortcuts
     public static final String PROP_ENABLE_SHORTCUTS = "enableShortcuts";
     public static final String PROP_SHORTCUT_PREFIX = "shortcutKey";
@@ -55,15 +56,16 @@ public class InvTweaksConfig {
     private final File rulesFile;
     private final File treeFile;
 
-    private InvTweaksConfigProperties properties;
-    private InvTweaksItemTree tree;
+    private volatile InvTweaksConfigProperties properties;
+    private volatile InvTweaksConfigSettings settings;
+    private volatile InvTweaksItemTree tree;
     private List<InvTweaksConfigInventoryRuleset> rulesets;
     private int currentRuleset = 0;
     @Nullable
     private String currentRulesetName = null;
     private List<String> invalidKeywords;
 
-    private long storedConfigLastModified;
+    private volatile long storedConfigLastModified;
 
 
     /**
@@ -96,77 +98,134 @@ public class InvTweaksConfig {
     }
 
     public void load() throws Exception {
+        apply(loadFiles());
+    }
 
-        synchronized(this) {
-
-            // Reset all
-            reset();
+    /**
+     * Reads the tree and rules files into a new configuration, without changing the current one. Can be run on any
+     * thread. The properties are read when applying it, since they can also be changed from the client thread.
+     */
+    @NotNull
+    LoadedFiles loadFiles() throws Exception {
+        // Load tree
+        @NotNull InvTweaksItemTree newTree = InvTweaksItemTreeLoader.load(treeFile);
+        try {
+            @NotNull LoadedFiles loadedFiles = new LoadedFiles(newTree, true);
+            loadRules(loadedFiles);
+            return loadedFiles;
+        } catch(Exception e) {
+            MinecraftForge.EVENT_BUS.unregister(newTree);
+            throw e;
+        }
+    }
 
-            // Load properties
-            loadProperties();
-            saveProperties(); // Needed to append non-saved properties to the file
+    /**
+     * Reads the rules file again into a new configuration, keeping the current properties and tree. Can be run on any
+     * thread.
+     */
+    @NotNull
+    LoadedFiles loadRulesFile() throws Exception {
+        @NotNull LoadedFiles loadedFiles = new LoadedFiles(tree, false);
+        loadRules(loadedFiles);
+        return loadedFiles;
+    }
 
-            if(tree != null) {
-                MinecraftForge.EVENT_BUS.unregister(tree);
+    private void loadRules(@NotNull LoadedFiles loadedFiles) throws IOException {
+        @NotNull InvTweaksItemTree newTree = loadedFiles.tree;
+        @NotNull List<InvTweaksConfigInventoryRuleset> newRulesets = loadedFiles.rulesets;
+
+        // Read file
+        @NotNull char[] bytes = new char[(int) rulesFile.length()];
+        @Nullable FileReader reader = null;
+        try {
+            reader = new FileReader(rulesFile);
+            reader.read(bytes);
+        } finally {
+            if(reader != null) {
+                reader.close();
             }
-            // Load tree
-            tree = InvTweaksItemTreeLoader.load(treeFile);
+        }
 
-            // Read file
-            @NotNull char[] bytes = new char[(int) rulesFile.length()];
-            @Nullable FileReader reader = null;
-            try {
-                reader = new FileReader(rulesFile);
-                reader.read(bytes);
-            } finally {
-                if(reader != null) {
-                    reader.close();
+        // Split lines into an array
+        @NotNull String[] configLines = String.valueOf(bytes).replace("\r\n", "\n").replace('\r', '\n').split("\n");
+
+        // Register rules in various configurations (rulesets)
+        @NotNull InvTweaksConfigInventoryRuleset activeRuleset = new InvTweaksConfigInventoryRuleset(newTree, "Default");
+        boolean defaultRuleset = true, defaultRulesetEmpty = true;
+        String invalidKeyword;
+
+        for(@NotNull String line : configLines) {
+            @NotNull String trimmedLine = line.trim();
+            if(!trimmedLine.isEmpty()) {
+                // Change ruleset
+                if(trimmedLine.matches("^[\\w]*[\\s]*:$")) {
+                    // Make sure not to add an empty default config to the rulesets
+                    if(!defaultRuleset || !defaultRulesetEmpty) {
+                        activeRuleset.finalizeRules();
+                        newRulesets.add(activeRuleset);
+                    }
+                    activeRuleset = new InvTweaksConfigInventoryRuleset(newTree, trimmedLine
+                            .substring(0, trimmedLine.length() - 1));
+                    defaultRuleset = false;
                 }
-            }
 
-            // Split lines into an array
-            @NotNull String[] configLines = String.valueOf(bytes).replace("\r\n", "\n").replace('\r', '\n').split("\n");
-
-            // Register rules in various configurations (rulesets)
-            @NotNull InvTweaksConfigInventoryRuleset activeRuleset = new InvTweaksConfigInventoryRuleset(tree, "Default");
-            boolean defaultRuleset = true, defaultRulesetEmpty = true;
-            String invalidKeyword;
-
-            for(@NotNull String line : configLines) {
-                @NotNull String trimmedLine = line.trim();
-                if(!trimmedLine.isEmpty()) {
-                    // Change ruleset
-                    if(trimmedLine.matches("^[\\w]*[\\s]*:$")) {
-                        // Make sure not to add an empty default config to the rulesets
-                        if(!defaultRuleset || !defaultRulesetEmpty) {
-                            activeRuleset.finalizeRules();
-                            rulesets.add(activeRuleset);
+                // Register line
+                else {
+                    try {
+                        invalidKeyword = activeRuleset.registerLine(trimmedLine);
+                        if(defaultRuleset) {
+                            defaultRulesetEmpty = false;
                         }
-                        activeRuleset = new InvTweaksConfigInventoryRuleset(tree, trimmedLine
-                                .substring(0, trimmedLine.length() - 1));
-                        defaultRuleset = false;
-                    }
-
-                    // Register line
-                    else {
-                        try {
-                            invalidKeyword = activeRuleset.registerLine(trimmedLine);
-                            if(defaultRuleset) {
-                                defaultRulesetEmpty = false;
-                            }
-                            if(invalidKeyword != null) {
-                                invalidKeywords.add(invalidKeyword);
-                            }
-                        } catch(InvalidParameterException e) {
-                            // Invalid line (comments), no problem
+                        if(invalidKeyword != null) {
+                            loadedFiles.invalidKeywords.add(invalidKeyword);
                         }
+                    } catch(InvalidParameterException e) {
+                        // Invalid line (comments), no problem
                     }
                 }
             }
+        }
+
+        // Finalize
+        activeRuleset.finalizeRules();
+        newRulesets.add(activeRuleset);
+    }
+
+    /**
+     * Makes the given files the current configuration, all at once, reading the properties file along if needed. To
+     * be called from the client thread.
+     */
+    void apply(@NotNull LoadedFiles loadedFiles) throws IOException {
+        @Nullable InvTweaksConfigProperties newProperties = null;
+        if(loadedFiles.reloadProperties) {
+            newProperties = createDefaultProperties();
+            try {
+                loadProperties(newProperties);
+            } catch(IOException e) {
+                if(loadedFiles.tree != tree) {
+                    MinecraftForge.EVENT_BUS.unregister(loadedFiles.tree);
+                }
+                throw e;
+            }
+            saveProperties(newProperties); // Needed to append non-saved properties to the file
+        }
 
-            // Finalize
-            activeRuleset.finalizeRules();
-            rulesets.add(activeRuleset);
+        boolean treeChanged;
+        synchronized(this) {
+            @Nullable InvTweaksItemTree oldTree = tree;
+
+            if(newProperties != null) {
+                properties = newProperties;
+                settings = new InvTweaksConfigSettings(properties);
+            }
+            rulesets = loadedFiles.rulesets;
+            invalidKeywords = loadedFiles.invalidKeywords;
+            tree = loadedFiles.tree;
+
+            if(oldTree != null && oldTree != tree) {
+                MinecraftForge.EVENT_BUS.unregister(oldTree);
+            }
+            treeChanged = oldTree != tree;
 
             // If a specific ruleset was loaded,
             // try to choose the same again, else load the first one
@@ -188,9 +247,11 @@ public class InvTweaksConfig {
                     currentRulesetName = null;
                 }
             }
-
         }
 
+        if(treeChanged) {
+            InvTweaksItemTreeLoader.publish(tree);
+        }
     }
 
     public boolean refreshProperties() throws IOException {
@@ -198,7 +259,8 @@ public class InvTweaksConfig {
         long configLastModified = InvTweaksConst.CONFIG_PROPS_FILE.lastModified();
         if(storedConfigLastModified != configLastModified) {
             storedConfigLastModified = configLastModified;
-            loadProperties();
+            loadProperties(properties);
+            settings = new InvTweaksConfigSettings(properties);
             return true;
         } else {
             return false;
@@ -209,6 +271,10 @@ public class InvTweaksConfig {
      * Saves properties
      */
     public void saveProperties() {
+        saveProperties(properties);
+    }
+
+    private void saveProperties(@NotNull InvTweaksConfigProperties properties) {
         @Nullable File configPropsFile = getPropertyFile();
         assert configPropsFile != null;
         if(configPropsFile.exists()) {
@@ -237,6 +303,14 @@ public class InvTweaksConfig {
         return result;
     }
 
+    /**
+     * @return The current values of the properties, to be used instead of looking them up in frequently run code
+     */
+    @NotNull
+    public InvTweaksConfigSettings getSettings() {
+        return settings;
+    }
+
     /**
      * Get a configuration property value
      *
@@ -254,6 +328,7 @@ public class InvTweaksConfig {
 
     public void setProperty(String key, String value) {
         properties.put(key, value);
+        settings = new InvTweaksConfigSettings(properties);
         saveProperties();
     }
 
@@ -319,7 +394,7 @@ public class InvTweaksConfig {
     }
 
     public boolean isAutoRefillEnabled(String itemID, int itemDamage) {
-        if(!getProperty(PROP_ENABLE_AUTO_REFILL).equals(VALUE_FALSE)) {
+        if(settings.isAutoRefillEnabled()) {
             List<IItemTreeItem> items = tree.getItems(itemID, itemDamage);
             List<String> autoReplaceRules = rulesets.get(currentRuleset).getAutoReplaceRules();
             boolean found = false;
@@ -340,9 +415,14 @@ public class InvTweaksConfig {
     private void reset() {
         rulesets = new ArrayList<>();
         currentRuleset = -1;
+        properties = createDefaultProperties();
+        settings = new InvTweaksConfigSettings(properties);
+        invalidKeywords = new ArrayList<>();
+    }
 
-        // Default property values
-        properties = new InvTweaksConfigProperties();
+    @NotNull
+    private static InvTweaksConfigProperties createDefaultProperties() {
+        @NotNull InvTweaksConfigProperties properties = new InvTweaksConfigProperties();
 
         properties.put(PROP_ENABLE_MIDDLE_CLICK, VALUE_TRUE);
         properties.put(PROP_SHOW_CHEST_BUTTONS, VALUE_FALSE);
@@ -358,6 +438,7 @@ public class InvTweaksConfig {
         // TODO: Reenable when it doesn't just break everything
         //properties.put(PROP_ENABLE_CONTAINER_MIRRORING, VALUE_FALSE);
         properties.put(PROP_INVERT_TOOL_DAMAGE, VALUE_TRUE);
+        properties.put(PROP_SORT_CLICKS_PER_TICK, "0");
 
         properties.put(PROP_SHORTCUT_ALL_ITEMS, "LCONTROL+LSHIFT, RCONTROL+RSHIFT");
         properties.put(PROP_SHORTCUT_EVERYTHING, "SPACE");
@@ -368,10 +449,10 @@ public class InvTweaksConfig {
 
         properties.put(PROP_VERSION, InvTweaksConst.MOD_VERSION.split(" ")[0]);
 
-        invalidKeywords = new ArrayList<>();
+        return properties;
     }
 
-    private void loadProperties() throws IOException {
+    private static void loadProperties(@NotNull InvTweaksConfigProperties properties) throws IOException {
         @Nullable File configPropsFile = getPropertyFile();
         @NotNull InvTweaksConfigProperties newProperties = new InvTweaksConfigProperties();
         if(configPropsFile != null) {
@@ -395,4 +476,25 @@ public class InvTweaksConfig {
         return ClientProxy.KEYBINDING_SORT.getKeyCode();
     }
 
+    /**
+     * Contents of the configuration files, not yet applied
+     */
+    static class LoadedFiles {
+        @NotNull
+        final InvTweaksItemTree tree;
+        /**
+         * Whether the properties file is to be read again when applying
+         */
+        final boolean reloadProperties;
+        @NotNull
+        final List<InvTweaksConfigInventoryRuleset> rulesets = new ArrayList<>();
+        @NotNull
+        final List<String> invalidKeywords = new ArrayList<>();
+
+        LoadedFiles(@NotNull InvTweaksItemTree tree_, boolean reloadProperties_) {
+            tree = tree_;
+            reloadProperties = reloadProperties_;
+        }
+    }
+
 }
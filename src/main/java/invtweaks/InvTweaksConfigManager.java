@@ -10,6 +10,10 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Handles the (re)loading of the configuration, and all that is related to file extraction/moves.
@@ -21,14 +25,33 @@ public class InvTweaksConfigManager {
 
     private static final Logger log = InvTweaks.log;
 
+    /**
+     * Reads the configuration files when they change, so that parsing them doesn't stall the game.
+     */
+    private static final ExecutorService reloadExecutor = Executors.newSingleThreadExecutor(r -> {
+        @NotNull Thread thread = new Thread(r, "InvTweaks config reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final Minecraft mc;
 
     /**
      * The mod's configuration.
      */
     @Nullable
-    private InvTweaksConfig config = null;
-    private long storedConfigLastModified = 0;
+    private volatile InvTweaksConfig config = null;
+    /**
+     * Modification dates of the rules and tree files when they were last read. The properties file is tracked by the
+     * configuration itself.
+     */
+    private long storedRulesLastModified = 0;
+    private long storedTreeLastModified = 0;
+    /**
+     * Files being read in the background, applied to the configuration once done.
+     */
+    @Nullable
+    private Future<InvTweaksConfig.LoadedFiles> pendingReload = null;
 
     @Nullable
     private InvTweaksHandlerAutoRefill autoRefillHandler = null;
@@ -39,10 +62,6 @@ public class InvTweaksConfigManager {
         mc = mc_;
     }
 
-    private static long computeConfigLastModified() {
-        return InvTweaksConst.CONFIG_RULES_FILE.lastModified() + InvTweaksConst.CONFIG_TREE_FILE.lastModified();
-    }
-
     private static void backupFile(@NotNull File file) {
         @NotNull File newFile = new File(file.getParentFile(), file.getName() + ".bak");
         log.warn("Backing up file: %1$s to %2$s", file.getAbsolutePath(), newFile.getAbsolutePath());
@@ -64,7 +83,11 @@ public class InvTweaksConfigManager {
         }
     }
 
-    // TODO Only reload modified file(s)
+    /**
+     * Reloads the configuration files that changed: the properties only refresh the settings, the rules are compiled
+     * again against the current tree, and the tree (along with everything else) is only read again if its file
+     * changed.
+     */
     public boolean makeSureConfigurationIsLoaded() {
 
         // Load properties
@@ -72,7 +95,7 @@ public class InvTweaksConfigManager {
             if(config != null && config.refreshProperties()) {
                 shortcutsHandler = new InvTweaksHandlerShortcuts(mc, config);
 
-                if(config.getProperty(InvTweaksConfig.PROP_ENABLE_CONFIG_LOADED_MESSAGE).equals(InvTweaksConfig.VALUE_TRUE)) {
+                if(config.getSettings().isConfigLoadedMessageEnabled()) {
                     InvTweaks.logInGameStatic("invtweaks.propsfile.loaded");
                 }
             }
@@ -80,13 +103,26 @@ public class InvTweaksConfigManager {
             InvTweaks.logInGameErrorStatic("invtweaks.loadconfig.refresh.error", e);
         }
 
+        // Apply rules + tree files read in the background
+        if(pendingReload != null) {
+            if(!pendingReload.isDone()) {
+                return true;
+            }
+            return finishReload();
+        }
+
         // Load rules + tree files
-        long configLastModified = computeConfigLastModified();
         if(config != null) {
-            // Check time of last edit for both configuration files.
-            return storedConfigLastModified == configLastModified || loadConfig();
+            // Check time of last edit for each configuration file
+            if(storedTreeLastModified != InvTweaksConst.CONFIG_TREE_FILE.lastModified()
+                    || !InvTweaksConst.CONFIG_RULES_FILE.exists()) {
+                return loadConfig(); // Also extracts missing files
+            } else if(storedRulesLastModified != InvTweaksConst.CONFIG_RULES_FILE.lastModified()) {
+                return reloadRules();
+            } else {
+                return true;
+            }
         } else {
-            storedConfigLastModified = configLastModified;
             return loadConfig();
         }
     }
@@ -111,6 +147,102 @@ public class InvTweaksConfigManager {
      * null.
      */
     private boolean loadConfig() {
+        prepareFiles();
+
+        storedRulesLastModified = InvTweaksConst.CONFIG_RULES_FILE.lastModified();
+        storedTreeLastModified = InvTweaksConst.CONFIG_TREE_FILE.lastModified();
+
+        if(config != null) {
+            // Keep using the current configuration until the new one is read
+            @NotNull InvTweaksConfig reloadedConfig = config;
+            pendingReload = reloadExecutor.submit(reloadedConfig::loadFiles);
+            return true;
+        }
+
+        // Load
+
+        @Nullable String error = null;
+        @Nullable Exception errorException = null;
+
+        try {
+
+            // Configuration creation
+            config = new InvTweaksConfig(InvTweaksConst.CONFIG_RULES_FILE, InvTweaksConst.CONFIG_TREE_FILE);
+            autoRefillHandler = new InvTweaksHandlerAutoRefill(mc, config);
+            shortcutsHandler = new InvTweaksHandlerShortcuts(mc, config);
+
+            // Configuration loading
+            config.load();
+            configLoaded();
+        } catch(FileNotFoundException e) {
+            error = "Config file not found";
+            errorException = e;
+        } catch(Exception e) {
+            error = "Error while loading config";
+            errorException = e;
+        }
+
+        if(error != null) {
+            recoverFromLoadError(error, errorException);
+            return false;
+        } else {
+            return true;
+        }
+    }
+
+    /**
+     * Reads the rules file again in the background, keeping the current tree.
+     */
+    private boolean reloadRules() {
+        storedRulesLastModified = InvTweaksConst.CONFIG_RULES_FILE.lastModified();
+
+        @NotNull InvTweaksConfig reloadedConfig = config;
+        pendingReload = reloadExecutor.submit(reloadedConfig::loadRulesFile);
+        return true;
+    }
+
+    /**
+     * Applies the files read in the background, with the same error handling as {@link #loadConfig()}.
+     */
+    private boolean finishReload() {
+        @Nullable String error = null;
+        @Nullable Exception errorException = null;
+
+        try {
+            @NotNull InvTweaksConfig.LoadedFiles loadedFiles = pendingReload.get();
+            config.apply(loadedFiles);
+            configLoaded();
+        } catch(ExecutionException e) {
+            error = e.getCause() instanceof FileNotFoundException ? "Config file not found" : "Error while loading config";
+            errorException = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } catch(Exception e) {
+            error = "Error while loading config";
+            errorException = e;
+        } finally {
+            pendingReload = null;
+        }
+
+        if(error != null) {
+            recoverFromLoadError(error, errorException);
+            return false;
+        } else {
+            return true;
+        }
+    }
+
+    private void configLoaded() {
+        shortcutsHandler.loadShortcuts();
+
+        if(config.getSettings().isConfigLoadedMessageEnabled()) {
+            InvTweaks.logInGameStatic("invtweaks.loadconfig.done");
+        }
+        showConfigErrors(config);
+    }
+
+    /**
+     * Makes sure the configuration files exist and are up to date.
+     */
+    private void prepareFiles() {
 
         // Ensure the config folder exists
         @NotNull File configDir = InvTweaksConst.MINECRAFT_CONFIG_DIR;
@@ -152,76 +284,40 @@ public class InvTweaksConfigManager {
             InvTweaks.logInGameStatic(InvTweaksConst.CONFIG_TREE_FILE + " " +
                     I18n.format("invtweaks.loadconfig.filemissing"));
         }
+    }
 
-        storedConfigLastModified = computeConfigLastModified();
-
-        // Load
-
-        @Nullable String error = null;
-        @Nullable Exception errorException = null;
+    private void recoverFromLoadError(@NotNull String error, @Nullable Exception errorException) {
+        log.error(error);
+        InvTweaks.logInGameErrorStatic(error, errorException);
 
         try {
+            // TODO: Refactor this so I'm not just copying the code from above.
+            // The purpose of this is to try to deal with any errors in their config files
+            // Because things crash if config is null
+            backupFile(InvTweaksConst.CONFIG_TREE_FILE);
+            backupFile(InvTweaksConst.CONFIG_RULES_FILE);
+            backupFile(InvTweaksConst.CONFIG_PROPS_FILE);
 
-            // Configuration creation
-            if(config == null) {
-                config = new InvTweaksConfig(InvTweaksConst.CONFIG_RULES_FILE, InvTweaksConst.CONFIG_TREE_FILE);
-                autoRefillHandler = new InvTweaksHandlerAutoRefill(mc, config);
-                shortcutsHandler = new InvTweaksHandlerShortcuts(mc, config);
-            }
+            extractFile(InvTweaksConst.DEFAULT_CONFIG_FILE, InvTweaksConst.CONFIG_RULES_FILE);
+            extractFile(InvTweaksConst.DEFAULT_CONFIG_TREE_FILE, InvTweaksConst.CONFIG_TREE_FILE);
+
+            config = new InvTweaksConfig(InvTweaksConst.CONFIG_RULES_FILE, InvTweaksConst.CONFIG_TREE_FILE);
+            autoRefillHandler = new InvTweaksHandlerAutoRefill(mc, config);
+            shortcutsHandler = new InvTweaksHandlerShortcuts(mc, config);
 
-            // Configuration loading
             config.load();
             shortcutsHandler.loadShortcuts();
-
-            if(config.getProperty(InvTweaksConfig.PROP_ENABLE_CONFIG_LOADED_MESSAGE).equals(InvTweaksConfig.VALUE_TRUE)) {
-                InvTweaks.logInGameStatic("invtweaks.loadconfig.done");
-            }
-            showConfigErrors(config);
-        } catch(FileNotFoundException e) {
-            error = "Config file not found";
-            errorException = e;
         } catch(Exception e) {
-            error = "Error while loading config";
-            errorException = e;
-        }
-
-        if(error != null) {
-            log.error(error);
-            InvTweaks.logInGameErrorStatic(error, errorException);
-
-            try {
-                // TODO: Refactor this so I'm not just copying the code from above.
-                // The purpose of this is to try to deal with any errors in their config files
-                // Because things crash if config is null
-                backupFile(InvTweaksConst.CONFIG_TREE_FILE);
-                backupFile(InvTweaksConst.CONFIG_RULES_FILE);
-                backupFile(InvTweaksConst.CONFIG_PROPS_FILE);
-
-                extractFile(InvTweaksConst.DEFAULT_CONFIG_FILE, InvTweaksConst.CONFIG_RULES_FILE);
-                extractFile(InvTweaksConst.DEFAULT_CONFIG_TREE_FILE, InvTweaksConst.CONFIG_TREE_FILE);
-
-                config = new InvTweaksConfig(InvTweaksConst.CONFIG_RULES_FILE, InvTweaksConst.CONFIG_TREE_FILE);
-                autoRefillHandler = new InvTweaksHandlerAutoRefill(mc, config);
-                shortcutsHandler = new InvTweaksHandlerShortcuts(mc, config);
-
-                config.load();
-                shortcutsHandler.loadShortcuts();
-            } catch(Exception e) {
-                // But if this fails too there's not much point in trying again
-                config = null;
-                autoRefillHandler = null;
-                shortcutsHandler = null;
-
-                if(e.getCause() == null) {
-                    e.initCause(errorException);
-                }
+            // But if this fails too there's not much point in trying again
+            config = null;
+            autoRefillHandler = null;
+            shortcutsHandler = null;
 
-                throw new Error("InvTweaks config load failed", e);
+            if(e.getCause() == null) {
+                e.initCause(errorException);
             }
 
-            return false;
-        } else {
-            return true;
+            throw new Error("InvTweaks config load failed", e);
         }
     }
 
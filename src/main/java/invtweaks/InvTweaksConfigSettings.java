@@ -0,0 +1,147 @@
+package invtweaks;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Typed snapshot of the configuration properties, built again whenever they are loaded or changed so that code run on
+ * every tick or click doesn't look up and parse strings. The properties themselves are only needed to persist and
+ * edit the settings.
+ * <p>
+ * Each switch keeps its historical reading: some are on unless set to "false", others only when set to "true".
+ */
+public class InvTweaksConfigSettings {
+
+    private static final int DEFAULT_AUTO_REFILL_DAMAGE_THRESHHOLD = 5;
+
+    private final boolean middleClickEnabled;
+    private final boolean chestButtonsShown;
+    private final boolean sortingOnPickupEnabled;
+    private final boolean autoEquipArmorEnabled;
+    private final boolean autoRefillEnabled;
+    private final boolean autoRefillBeforeBreak;
+    private final int autoRefillDamageThreshhold;
+    private final boolean toolDamageInverted;
+    private final int sortClicksPerTick;
+    private final boolean shortcutsEnabled;
+    private final boolean soundsEnabled;
+    private final boolean serverItemSwapEnabled;
+    private final boolean configLoadedMessageEnabled;
+    /**
+     * Key combinations of each shortcut property, each combination being the names of the keys to hold
+     */
+    @NotNull
+    private final Map<String, List<String[]>> shortcutKeys;
+
+    public InvTweaksConfigSettings(@NotNull Properties properties) {
+        middleClickEnabled = isTrue(properties, InvTweaksConfig.PROP_ENABLE_MIDDLE_CLICK);
+        chestButtonsShown = !isFalse(properties, InvTweaksConfig.PROP_SHOW_CHEST_BUTTONS);
+        sortingOnPickupEnabled = !isFalse(properties, InvTweaksConfig.PROP_ENABLE_SORTING_ON_PICKUP);
+        autoEquipArmorEnabled = isTrue(properties, InvTweaksConfig.PROP_ENABLE_AUTO_EQUIP_ARMOR);
+        autoRefillEnabled = !isFalse(properties, InvTweaksConfig.PROP_ENABLE_AUTO_REFILL);
+        autoRefillBeforeBreak = isTrue(properties, InvTweaksConfig.PROP_AUTO_REFILL_BEFORE_BREAK);
+        autoRefillDamageThreshhold = getInt(properties, InvTweaksConfig.PROP_AUTO_REFILL_DAMAGE_THRESHHOLD,
+                DEFAULT_AUTO_REFILL_DAMAGE_THRESHHOLD);
+        toolDamageInverted = isTrue(properties, InvTweaksConfig.PROP_INVERT_TOOL_DAMAGE);
+        sortClicksPerTick = Math.max(0, getInt(properties, InvTweaksConfig.PROP_SORT_CLICKS_PER_TICK, 0));
+        shortcutsEnabled = isTrue(properties, InvTweaksConfig.PROP_ENABLE_SHORTCUTS);
+        soundsEnabled = !isFalse(properties, InvTweaksConfig.PROP_ENABLE_SOUNDS);
+        serverItemSwapEnabled = !isFalse(properties, InvTweaksConfig.PROP_ENABLE_SERVER_ITEMSWAP);
+        configLoadedMessageEnabled = isTrue(properties, InvTweaksConfig.PROP_ENABLE_CONFIG_LOADED_MESSAGE);
+
+        @NotNull Map<String, List<String[]>> keys = new HashMap<>();
+        for(@NotNull String key : properties.stringPropertyNames()) {
+            if(key.startsWith(InvTweaksConfig.PROP_SHORTCUT_PREFIX)) {
+                @NotNull List<String[]> combinations = new ArrayList<>();
+                for(@NotNull String keyMapping : properties.getProperty(key).split("[ ]*,[ ]*")) {
+                    combinations.add(keyMapping.split("\\+"));
+                }
+                keys.put(key, Collections.unmodifiableList(combinations));
+            }
+        }
+        shortcutKeys = Collections.unmodifiableMap(keys);
+    }
+
+    private static boolean isTrue(@NotNull Properties properties, @NotNull String key) {
+        return InvTweaksConfig.VALUE_TRUE.equals(properties.getProperty(key));
+    }
+
+    private static boolean isFalse(@NotNull Properties properties, @NotNull String key) {
+        return InvTweaksConfig.VALUE_FALSE.equals(properties.getProperty(key));
+    }
+
+    private static int getInt(@NotNull Properties properties, @NotNull String key, int defaultValue) {
+        @Nullable String value = properties.getProperty(key);
+        try {
+            return (value != null) ? Integer.parseInt(value.trim()) : defaultValue;
+        } catch(NumberFormatException e) {
+            InvTweaks.log.warn("Invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public boolean isMiddleClickEnabled() {
+        return middleClickEnabled;
+    }
+
+    public boolean areChestButtonsShown() {
+        return chestButtonsShown;
+    }
+
+    public boolean isSortingOnPickupEnabled() {
+        return sortingOnPickupEnabled;
+    }
+
+    public boolean isAutoEquipArmorEnabled() {
+        return autoEquipArmorEnabled;
+    }
+
+    public boolean isAutoRefillEnabled() {
+        return autoRefillEnabled;
+    }
+
+    public boolean isAutoRefillBeforeBreak() {
+        return autoRefillBeforeBreak;
+    }
+
+    public int getAutoRefillDamageThreshhold() {
+        return autoRefillDamageThreshhold;
+    }
+
+    public boolean isToolDamageInverted() {
+        return toolDamageInverted;
+    }
+
+    /**
+     * @return The maximum number of clicks a sort makes per tick, 0 for no limit
+     */
+    public int getSortClicksPerTick() {
+        return sortClicksPerTick;
+    }
+
+    public boolean areShortcutsEnabled() {
+        return shortcutsEnabled;
+    }
+
+    public boolean areSoundsEnabled() {
+        return soundsEnabled;
+    }
+
+    public boolean isServerItemSwapEnabled() {
+        return serverItemSwapEnabled;
+    }
+
+    public boolean isConfigLoadedMessageEnabled() {
+        return configLoadedMessageEnabled;
+    }
+
+    /**
+     * @return The key combinations of each shortcut, by property name. The arrays are shared and must not be modified.
+     */
+    @NotNull
+    public Map<String, List<String[]>> getShortcutKeys() {
+        return shortcutKeys;
+    }
+}
@@ -4,6 +4,9 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,6 +19,18 @@ import java.util.regex.Pattern;
 public class InvTweaksConfigSortingRule implements Comparable<InvTweaksConfigSortingRule> {
     private static final Pattern constraintVertical = Pattern.compile("v", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.LITERAL);
     private static final Pattern constraintReverse = Pattern.compile("r", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.LITERAL);
+    private static final int PREFERRED_POSITIONS_CACHE_SIZE = 256;
+    /**
+     * Parsed constraints, by constraint and container dimensions, the least recently used ones being forgotten. Rules
+     * are created again on every chest sort, on the client thread as well as when reloading the configuration.
+     */
+    private static final Map<String, int[]> preferredPositionsCache = Collections.synchronizedMap(
+            new LinkedHashMap<String, int[]>(PREFERRED_POSITIONS_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+                    return size() > PREFERRED_POSITIONS_CACHE_SIZE;
+                }
+            });
     private String constraint;
     @Nullable
     private int[] preferredPositions;
@@ -34,19 +49,63 @@ public class InvTweaksConfigSortingRule implements Comparable<InvTweaksConfigSor
         containerRowSize = containerRowSize_;
         type = getRuleType(constraint, containerRowSize);
         preferredPositions = getRulePreferredPositions(constraint);
+        priority = computePriority(tree);
+
+    }
+
+    /**
+     * Rectangle rule given by its corners, as rows and columns starting from 0. Unlike constraints, allows any
+     * container dimensions.
+     */
+    public InvTweaksConfigSortingRule(@NotNull InvTweaksItemTree tree, int row1, int column1, int row2, int column2,
+                                      boolean vertical, String keyword_, int containerSize_, int containerRowSize_) {
+
+        keyword = keyword_;
+        constraint = (row1 + 1) + ":" + (column1 + 1) + "-" + (row2 + 1) + ":" + (column2 + 1) + (vertical ? "v" : "");
+        containerSize = containerSize_;
+        containerRowSize = containerRowSize_;
+        if(column1 == column2) {
+            type = InvTweaksConfigSortingRuleType.COLUMN;
+        } else if(row1 == row2) {
+            type = InvTweaksConfigSortingRuleType.ROW;
+        } else {
+            type = InvTweaksConfigSortingRuleType.RECTANGLE;
+        }
+        preferredPositions = getRectanglePositions(new Point(column1, row1), new Point(column2, row2), vertical,
+                containerRowSize);
+        priority = computePriority(tree);
 
+    }
+
+    private int computePriority(@NotNull InvTweaksItemTree tree) {
         // Compute priority
         // 1st criteria : the rule type
         // 2st criteria : the keyword category depth
         // 3st criteria : the item order in a same category
 
-        priority = type.getLowestPriority() + 100000 +
+        return type.getLowestPriority() + 100000 +
                 tree.getKeywordDepth(keyword) * 1000 - tree.getKeywordOrder(keyword);
-
     }
 
+    /**
+     * @return The preferred slots of the given constraint. The array is shared and must not be modified.
+     */
     @Nullable
     public static int[] getRulePreferredPositions(@NotNull String constraint, int containerSize, int containerRowSize) {
+        @NotNull String cacheKey = constraint + "/" + containerSize + "/" + containerRowSize;
+        @Nullable int[] result = preferredPositionsCache.get(cacheKey);
+        if(result == null) {
+            result = parseRulePreferredPositions(constraint, containerSize, containerRowSize);
+            if(result != null) {
+                preferredPositionsCache.put(cacheKey, result);
+            }
+        }
+        return result;
+    }
+
+    @Nullable
+    private static int[] parseRulePreferredPositions(@NotNull String constraint, int containerSize,
+                                                     int containerRowSize) {
 
         @Nullable int[] result = null;
         int containerColumnSize = containerSize / containerRowSize;
@@ -67,33 +126,8 @@ public class InvTweaksConfigSortingRule implements Comparable<InvTweaksConfigSor
                 if(slots1.length == 1 && slots2.length == 1) {
 
                     int slot1 = slots1[0], slot2 = slots2[0];
-
-                    @NotNull Point point1 = new Point(slot1 % containerRowSize, slot1 / containerRowSize),
-                            point2 = new Point(slot2 % containerRowSize, slot2 / containerRowSize);
-
-                    result = new int[(Math.abs(point2.y - point1.y) + 1) * (Math.abs(point2.x - point1.x) + 1)];
-                    int resultIndex = 0;
-
-                    // Swap coordinates for vertical ordering
-                    if(vertical) {
-                        for(@NotNull Point p : new Point[]{point1, point2}) {
-                            int buffer = p.x;
-                            //noinspection SuspiciousNameCombination
-                            p.x = p.y;
-                            p.y = buffer;
-                        }
-                    }
-
-                    int y = point1.y;
-                    while((point1.y < point2.y) ? y <= point2.y : y >= point2.y) {
-                        int x = point1.x;
-                        while((point1.x < point2.x) ? x <= point2.x : x >= point2.x) {
-                            result[resultIndex++] = (vertical) ? index(containerRowSize, x, y) : index(containerRowSize,
-                                    y, x);
-                            x += (point1.x < point2.x) ? 1 : -1;
-                        }
-                        y += (point1.y < point2.y) ? 1 : -1;
-                    }
+                    result = getRectanglePositions(new Point(slot1 % containerRowSize, slot1 / containerRowSize),
+                            new Point(slot2 % containerRowSize, slot2 / containerRowSize), vertical, containerRowSize);
 
                     if(constraintReverse.matcher(constraint).find()) {
                         reverseArray(result);
@@ -148,6 +182,39 @@ public class InvTweaksConfigSortingRule implements Comparable<InvTweaksConfigSor
         return result;
     }
 
+    /**
+     * @return The slots of the rectangle between the two given corners (x being the column and y the row), line by line
+     * or column by column if vertical
+     */
+    @NotNull
+    private static int[] getRectanglePositions(@NotNull Point point1, @NotNull Point point2, boolean vertical,
+                                               int containerRowSize) {
+        @NotNull int[] result = new int[(Math.abs(point2.y - point1.y) + 1) * (Math.abs(point2.x - point1.x) + 1)];
+        int resultIndex = 0;
+
+        // Swap coordinates for vertical ordering
+        if(vertical) {
+            for(@NotNull Point p : new Point[]{point1, point2}) {
+                int buffer = p.x;
+                //noinspection SuspiciousNameCombination
+                p.x = p.y;
+                p.y = buffer;
+            }
+        }
+
+        int y = point1.y;
+        while((point1.y < point2.y) ? y <= point2.y : y >= point2.y) {
+            int x = point1.x;
+            while((point1.x < point2.x) ? x <= point2.x : x >= point2.x) {
+                result[resultIndex++] = (vertical) ? index(containerRowSize, x, y) : index(containerRowSize,
+                        y, x);
+                x += (point1.x < point2.x) ? 1 : -1;
+            }
+            y += (point1.y < point2.y) ? 1 : -1;
+        }
+        return result;
+    }
+
     @NotNull
     public static InvTweaksConfigSortingRuleType getRuleType(@NotNull String constraint, int rowSize) {
 
@@ -246,7 +313,6 @@ public class InvTweaksConfigSortingRule implements Comparable<InvTweaksConfigSor
 
     @Nullable
     public int[] getRulePreferredPositions(@NotNull String constraint) {
-        // TODO Caching
         return InvTweaksConfigSortingRule.getRulePreferredPositions(constraint, containerSize, containerRowSize);
     }
 
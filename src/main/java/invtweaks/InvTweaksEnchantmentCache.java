@@ -0,0 +1,90 @@
+package invtweaks;
+
+import net.minecraft.enchantment.Enchantment;
+import net.minecraft.init.Items;
+import net.minecraft.item.ItemEnchantedBook;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Enchantment summaries of stacks, as used to order them: the number of enchantments, then the ID and level of the
+ * strongest one (highest level, then highest ID). Summaries are packed in a long so that the stack with the greatest
+ * summary goes first, and read straight from the NBT instead of building a map of enchantments.
+ * <p>
+ * Summaries are cached by tag compound instance. Since tags can be modified in place, a cache should only live for a
+ * sort or a batch of comparisons. Not thread-safe.
+ */
+public class InvTweaksEnchantmentCache {
+
+    @NotNull
+    private final Map<NBTTagCompound, Long> summaries = new IdentityHashMap<>();
+
+    /**
+     * @return The enchantment summary of the stack, 0 if it has none
+     */
+    public long getSummary(@NotNull ItemStack stack) {
+        @Nullable NBTTagCompound tag = stack.getTagCompound();
+        if(tag == null) {
+            return 0;
+        }
+        @Nullable Long summary = summaries.get(tag);
+        if(summary == null) {
+            summary = summarize(stack);
+            summaries.put(tag, summary);
+        }
+        return summary;
+    }
+
+    public void clear() {
+        summaries.clear();
+    }
+
+    /**
+     * Same result as going through {@link net.minecraft.enchantment.EnchantmentHelper#getEnchantments(ItemStack)},
+     * without the cache.
+     */
+    public static long summarize(@NotNull ItemStack stack) {
+        if(!stack.hasTagCompound()) {
+            return 0;
+        }
+        @NotNull NBTTagList enchantments = (stack.getItem() == Items.ENCHANTED_BOOK) ?
+                ItemEnchantedBook.getEnchantments(stack) : stack.getEnchantmentTagList();
+
+        int count = 0, maxId = 0, maxLevel = 0;
+        for(int i = 0; i < enchantments.tagCount(); i++) {
+            @NotNull NBTTagCompound enchantment = enchantments.getCompoundTagAt(i);
+            int id = enchantment.getShort("id");
+            if(Enchantment.getEnchantmentByID(id) == null || isRepeated(enchantments, i, id)) {
+                continue; // Ignored by the game too, or overridden by a later entry
+            }
+            int level = enchantment.getShort("lvl");
+            count++;
+            if(level > maxLevel) {
+                maxId = id;
+                maxLevel = level;
+            } else if(level == maxLevel && id > maxId) {
+                maxId = id;
+            }
+        }
+        return ((long) count << 32) | ((long) (maxId & 0xFFFF) << 16) | (maxLevel & 0xFFFF);
+    }
+
+    /**
+     * @return true if the given enchantment ID appears again after the given index. Like in a map, the last entry
+     * wins. Enchantment lists are short enough to just search them.
+     */
+    private static boolean isRepeated(@NotNull NBTTagList enchantments, int index, int id) {
+        for(int i = index + 1; i < enchantments.tagCount(); i++) {
+            if(enchantments.getCompoundTagAt(i).getShort("id") == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
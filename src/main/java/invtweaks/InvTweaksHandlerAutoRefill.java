@@ -50,8 +50,7 @@ public class InvTweaksHandlerAutoRefill extends InvTweaksObfuscation {
                 ContainerSection.INVENTORY);
         @NotNull ItemStack candidateStack, replacementStack = ItemStack.EMPTY;
         int replacementStackSlot = -1;
-        boolean refillBeforeBreak = config.getProperty(InvTweaksConfig.PROP_AUTO_REFILL_BEFORE_BREAK)
-                .equals(InvTweaksConfig.VALUE_TRUE);
+        boolean refillBeforeBreak = config.getSettings().isAutoRefillBeforeBreak();
         boolean hasSubtypes = false;
 
         // TODO: ResourceLocation
@@ -116,15 +115,14 @@ public class InvTweaksHandlerAutoRefill extends InvTweaksObfuscation {
                     if(!candidateStack.isEmpty()) {
                         // TODO: It looks like Mojang changed the internal name type to ResourceLocation. Evaluate how much of a pain that will be.
                         @NotNull List<IItemTreeItem> candidateItems = tree
-                                .getItems(candidateStack.getItem().getRegistryName().toString(), candidateStack.getItemDamage());
+                                .getItems(candidateStack.getItem(), candidateStack.getItemDamage(), null);
                         if(tree.matches(candidateItems, rule.getKeyword())) {
                             // Choose tool of highest damage value
                             if(candidateStack.getMaxStackSize() == 1) {
                                 // Item
                                 if((replacementStack.isEmpty() || candidateStack.getItemDamage() > replacementStack
                                         .getItemDamage()) && (!refillBeforeBreak || candidateStack.getMaxDamage() - candidateStack
-                                        .getItemDamage() > config
-                                        .getIntProperty(InvTweaksConfig.PROP_AUTO_REFILL_DAMAGE_THRESHHOLD))) {
+                                        .getItemDamage() > config.getSettings().getAutoRefillDamageThreshhold())) {
                                     replacementStack = candidateStack;
                                     replacementStackSlot = i;
                                 }
@@ -203,8 +201,7 @@ public class InvTweaksHandlerAutoRefill extends InvTweaksObfuscation {
                     if(!stack.isEmpty() && StringUtils.equals(stack.getItem().getRegistryName().toString(),
                             expectedItemId) || this.refillBeforeBreak) {
                         if(containerMgr.move(targetedSlot, i) || containerMgr.move(i, targetedSlot)) {
-                            if(!config.getProperty(InvTweaksConfig.PROP_ENABLE_SOUNDS)
-                                    .equals(InvTweaksConfig.VALUE_FALSE)) {
+                            if(config.getSettings().areSoundsEnabled()) {
                                 mc.getSoundHandler().playSound(PositionedSoundRecord.getMasterRecord(
                                         SoundEvents.ENTITY_CHICKEN_EGG, 1.0F));
                             }
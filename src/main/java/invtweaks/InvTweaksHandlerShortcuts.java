@@ -44,13 +44,10 @@ public class InvTweaksHandlerShortcuts extends InvTweaksObfuscation {
         shortcuts.clear();
 
         // Register shortcut mappings
-        @NotNull Map<String, String> keys = config.getProperties(InvTweaksConfig.PROP_SHORTCUT_PREFIX);
-        for(String key : keys.keySet()) {
-            @NotNull String[] keyMappings = keys.get(key).split("[ ]*,[ ]*");
-            @Nullable InvTweaksShortcutType shortcutType = InvTweaksShortcutType.fromConfigKey(key);
+        for(@NotNull Map.Entry<String, List<String[]>> entry : config.getSettings().getShortcutKeys().entrySet()) {
+            @Nullable InvTweaksShortcutType shortcutType = InvTweaksShortcutType.fromConfigKey(entry.getKey());
             if(shortcutType != null) {
-                for(@NotNull String keyMapping : keyMappings) {
-                    @NotNull String[] keysToHold = keyMapping.split("\\+");
+                for(@NotNull String[] keysToHold : entry.getValue()) {
                     registerShortcutMapping(shortcutType, new InvTweaksShortcutMapping(keysToHold));
                 }
             }
@@ -5,137 +5,218 @@ import invtweaks.api.SortingMethod;
 import invtweaks.api.container.ContainerSection;
 import invtweaks.container.ContainerSectionManager;
 import invtweaks.container.IContainerManager;
+import invtweaks.container.RearrangementPlan;
+import invtweaks.container.SnapshotContainerManager;
 import net.minecraft.client.Minecraft;
+import net.minecraft.inventory.Container;
 import net.minecraft.inventory.Slot;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemArmor;
 import net.minecraft.item.ItemStack;
-import net.minecraft.util.ResourceLocation;
-import org.apache.commons.lang3.tuple.Pair;
+import net.minecraft.nbt.NBTTagCompound;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-import java.util.Map.Entry;
 
 /**
  * Core of the sorting behaviour. Allows to move items in a container (inventory or chest) with respect to the mod's
  * configuration.
+ * <p>
+ * The sorted layout is first worked out on a copy of the section, then reached with as few clicks as possible (see
+ * {@link RearrangementPlan}).
  *
  * @author Jimeo Wan
  */
 public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
     private static final Logger log = InvTweaks.log;
-    private static final int MAX_CONTAINER_SIZE = 999;
+    /**
+     * Sections above that size are sorted rule by rule with a single ordered assignment, rather than stack by stack
+     */
+    private static final int LARGE_SECTION_SIZE = 256;
+    private static final int LINE_RULES_CACHE_SIZE = 16;
+    /**
+     * Line sorting rules generated for the latest chest layouts and contents, as players often cycle through the
+     * sorting methods on the same chest. Only valid for the tree they were made with.
+     */
+    private static final Map<String, List<InvTweaksConfigSortingRule>> lineRulesCache = new LinkedHashMap<String, List<InvTweaksConfigSortingRule>>(
+            LINE_RULES_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<InvTweaksConfigSortingRule>> eldest) {
+            return size() > LINE_RULES_CACHE_SIZE;
+        }
+    };
     @Nullable
-    private static int[] DEFAULT_LOCK_PRIORITIES = null;
+    private static InvTweaksItemTree lineRulesTree = null;
+    /**
+     * Sort whose clicks are being spread over several ticks, if any
+     */
+    @Nullable
+    private static InvTweaksHandlerSorting pendingSort = null;
+    /**
+     * State of the latest sorted section, to skip sorting it again while nothing changed
+     */
     @Nullable
-    private static boolean[] DEFAULT_FROZEN_SLOTS = null;
+    private static Fingerprint lastSortFingerprint = null;
+    private ContainerSection section;
+    private int rowSize;
+    private List<InvTweaksConfigSortingRule> configRules;
     private ContainerSectionManager containerMgr;
+    private ContainerSectionManager liveContainerMgr;
+    private ContainerSectionManager snapshotContainerMgr;
+    private SnapshotContainerManager snapshot;
     private SortingMethod algorithm;
     private int size;
     private boolean sortArmorParts;
+    private boolean invertToolDamage;
+    /**
+     * Maximum amount of clicks per tick, 0 to click everything at once
+     */
+    private int clicksPerTick;
+    private long sortStartTime;
+    @Nullable
+    private RearrangementPlan plan;
+    @Nullable
+    private RearrangementPlan.Execution execution;
+    @Nullable
+    private Container container;
 
     private InvTweaksItemTree tree;
     private List<InvTweaksConfigSortingRule> rules;
     private int[] rulePriority;
     private int[] keywordOrder;
+    private InvTweaksSortKeys sortKeys;
+    /**
+     * Distinct items met while sorting, by tree items, with the rules matching them
+     */
+    @NotNull
+    private final Map<List<IItemTreeItem>, ItemKey> itemKeys = new IdentityHashMap<>();
+    private ItemKey[] slotKeys;
+    /**
+     * Slots matching each rule, kept up to date as stacks move
+     */
+    private BitSet[] ruleSlots;
     @Nullable
     private int[] lockPriorities;
     @Nullable
     private boolean[] frozenSlots;
 
-    public InvTweaksHandlerSorting(Minecraft mc_, @NotNull InvTweaksConfig config, ContainerSection section, SortingMethod algorithm_,
-                                   int rowSize) throws Exception {
+    public InvTweaksHandlerSorting(Minecraft mc_, @NotNull InvTweaksConfig config, ContainerSection section_, SortingMethod algorithm_,
+                                   int rowSize_) throws Exception {
         super(mc_);
-
-        // Init constants
-
-        if(DEFAULT_LOCK_PRIORITIES == null) {
-            DEFAULT_LOCK_PRIORITIES = new int[MAX_CONTAINER_SIZE];
-            for(int i = 0; i < MAX_CONTAINER_SIZE; i++) {
-                DEFAULT_LOCK_PRIORITIES[i] = 0;
-            }
-        }
-        if(DEFAULT_FROZEN_SLOTS == null) {
-            DEFAULT_FROZEN_SLOTS = new boolean[MAX_CONTAINER_SIZE];
-            for(int i = 0; i < MAX_CONTAINER_SIZE; i++) {
-                DEFAULT_FROZEN_SLOTS[i] = false;
-            }
-        }
+        section = section_;
+        rowSize = rowSize_;
 
         // Init attributes
 
-        containerMgr = new ContainerSectionManager(section);
+        @NotNull IContainerManager globalContainer = InvTweaks.getCurrentContainerManager();
+        liveContainerMgr = new ContainerSectionManager(globalContainer, section);
+        snapshot = new SnapshotContainerManager(globalContainer, section);
+        snapshotContainerMgr = new ContainerSectionManager(snapshot, section);
+        containerMgr = liveContainerMgr;
         size = containerMgr.getSize();
-        sortArmorParts = config.getProperty(InvTweaksConfig.PROP_ENABLE_AUTO_EQUIP_ARMOR)
-                .equals(InvTweaksConfig.VALUE_TRUE) && !isGuiInventoryCreative(
+        @NotNull InvTweaksConfigSettings settings = config.getSettings();
+        sortArmorParts = settings.isAutoEquipArmorEnabled() && !isGuiInventoryCreative(
                 getCurrentScreen()); // FIXME Armor parts disappear when sorting in creative mode while holding an item
+        invertToolDamage = settings.isToolDamageInverted();
+        clicksPerTick = settings.getSortClicksPerTick();
 
-        rules = config.getRules();
+        configRules = config.getRules();
+        rules = configRules;
         tree = config.getTree();
         if(section == ContainerSection.INVENTORY) {
-            lockPriorities = config.getLockPriorities();
-            frozenSlots = config.getFrozenSlots();
+            // Sized to the section, in case it doesn't match the configured inventory
+            lockPriorities = Arrays.copyOf(config.getLockPriorities(), size);
+            frozenSlots = Arrays.copyOf(config.getFrozenSlots(), size);
             algorithm = SortingMethod.INVENTORY;
         } else {
-            lockPriorities = DEFAULT_LOCK_PRIORITIES;
-            frozenSlots = DEFAULT_FROZEN_SLOTS;
+            lockPriorities = new int[size];
+            frozenSlots = new boolean[size];
             algorithm = algorithm_;
             if(algorithm != SortingMethod.DEFAULT) {
                 computeLineSortingRules(rowSize, algorithm == SortingMethod.HORIZONTAL);
             }
         }
+    }
 
+    private static boolean canMergeStacks(@NotNull ItemStack from, @NotNull ItemStack to) {
+        if(areItemsStackable(from, to)) {
+            // We will not merge from a stack that exceeds its maximum size already, as these cannot be normally obtained.
+            if(from.getCount() > from.getMaxStackSize()) {
+                return false;
+            }
+
+            // If the destination stack has any room left, we can add to it.
+            if(to.getCount() < to.getMaxStackSize()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void initSlotOrders() {
+        sortKeys = new InvTweaksSortKeys(containerMgr, invertToolDamage);
         rulePriority = new int[size];
         keywordOrder = new int[size];
+        slotKeys = new ItemKey[size];
+        ruleSlots = new BitSet[rules.size()];
+        for(int r = 0; r < ruleSlots.length; r++) {
+            ruleSlots[r] = new BitSet(size);
+        }
         for(int i = 0; i < size; i++) {
             rulePriority[i] = -1;
-            @NotNull ItemStack stack = containerMgr.getItemStack(i);
-            if(!stack.isEmpty()) {
-                keywordOrder[i] = getItemOrder(stack);
-            } else {
-                keywordOrder[i] = -1;
-            }
+            setSlotKey(i, getItemKey(containerMgr.getItemStack(i)));
+            keywordOrder[i] = getSlotOrder(i);
         }
 
         // Initialize rule priority for currently matching items
-        // TODO: J1.8 streams?
-        rules.stream().filter(rule -> (rule.getContainerSize() == size && rule.getPreferredSlots() != null)).forEach(rule -> {
-            int priority = rule.getPriority();
-            for(int slot : rule.getPreferredSlots()) {
-                @NotNull ItemStack stack = containerMgr.getItemStack(slot);
-                if(!stack.isEmpty()) {
-                    @NotNull List<IItemTreeItem> items = tree
-                            .getItems(stack.getItem().getRegistryName().toString(), stack.getItemDamage(), stack.getTagCompound());
-                    if(rulePriority[slot] < priority && tree.matches(items, rule.getKeyword())) {
+        for(int r = 0; r < rules.size(); r++) {
+            @NotNull InvTweaksConfigSortingRule rule = rules.get(r);
+            if(rule.getContainerSize() == size && rule.getPreferredSlots() != null) {
+                int priority = rule.getPriority();
+                for(int slot : rule.getPreferredSlots()) {
+                    if(rulePriority[slot] < priority && ruleSlots[r].get(slot)) {
                         rulePriority[slot] = priority;
                     }
                 }
             }
-        });
+        }
     }
 
-    private static boolean canMergeStacks(@NotNull ItemStack from, @NotNull ItemStack to) {
-        if(areItemsStackable(from, to)) {
-            // We will not merge from a stack that exceeds its maximum size already, as these cannot be normally obtained.
-            if(from.getCount() > from.getMaxStackSize()) {
-                return false;
-            }
+    /**
+     * Performs the next clicks of the pending sort, if any. To be called on every tick while a GUI is open.
+     */
+    public static void resumePendingSort() {
+        if(pendingSort != null) {
+            pendingSort.resume();
+        }
+    }
 
-            // If the destination stack has any room left, we can add to it.
-            if(to.getCount() < to.getMaxStackSize()) {
-                return true;
-            }
+    /**
+     * Drops the pending sort, if any. To be called once the GUI is closed. Pending sorts stop between steps, so
+     * nothing is left on the cursor.
+     */
+    public static void cancelPendingSort() {
+        if(pendingSort != null) {
+            log.warn("GUI closed, sorting interrupted.");
+            pendingSort = null;
         }
-        return false;
     }
 
     public void sort() {
-        long timer = System.nanoTime();
+        sortStartTime = System.nanoTime();
+        pendingSort = null; // Starting over from the current contents
         @NotNull IContainerManager globalContainer = InvTweaks.getCurrentContainerManager();
 
+        // Nothing to do if the section is still as the latest sort left it
+        if(getHeldStack().isEmpty() && (algorithm != SortingMethod.INVENTORY || isCraftingGridEmpty(globalContainer))
+                && computeFingerprint(globalContainer).equals(lastSortFingerprint)) {
+            log.info("Already sorted.");
+            return;
+        }
+        lastSortFingerprint = null;
+
         // Put hold item down
         if(!getHeldStack().isEmpty()) {
             int emptySlot = globalContainer.getFirstEmptyIndex(ContainerSection.INVENTORY);
@@ -146,21 +227,68 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
             }
         }
 
-        if(algorithm != SortingMethod.DEFAULT) {
-            if(algorithm == SortingMethod.EVEN_STACKS) {
-                sortEvenStacks();
-            } else if(algorithm == SortingMethod.INVENTORY) {
-                sortInventory(globalContainer);
+        if(algorithm == SortingMethod.INVENTORY) {
+            sortInventory(globalContainer);
+        }
+
+        //// Compute the sorted layout, then click our way to it
+        plan = computePlan();
+        if(plan != null) {
+            if(clicksPerTick > 0 && plan.getClickCount() > clicksPerTick) {
+                execution = plan.start(containerMgr);
+                if(execution != null) {
+                    // Spread the clicks over the next ticks, the sort being finished once they're all done
+                    container = globalContainer.getContainer();
+                    pendingSort = this;
+                    resume();
+                    return;
+                }
             }
-            sortWithRules();
+            plan.execute(containerMgr);
+        } else {
+            log.warn("Sorting plan failed, sorting directly.");
+            computeLayout();
         }
 
-        //// Sort remaining
-        defaultSorting();
+        finishSort(true);
+    }
+
+    private void resume() {
+        if(getCurrentContainer() != container) {
+            log.warn("Container changed, sorting interrupted.");
+            pendingSort = null;
+            finishSort(false);
+            return;
+        }
+
+        if(!execution.run(clicksPerTick)) {
+            log.warn("Container contents changed, sorting interrupted.");
+            pendingSort = null;
+            finishSort(false);
+        } else if(execution.isDone()) {
+            pendingSort = null;
+            finishSort(true);
+        }
+    }
+
+    /**
+     * @param completed false if the sort was interrupted, in which case the section is not considered sorted
+     */
+    private void finishSort(boolean completed) {
+        @NotNull IContainerManager globalContainer = InvTweaks.getCurrentContainerManager();
 
         if(log.isEnabled(InvTweaksConst.DEBUG)) {
-            timer = System.nanoTime() - timer;
+            long timer = System.nanoTime() - sortStartTime;
             log.info("Sorting done in " + timer + "ns");
+            if(plan != null) {
+                log.info("Sorting plan: " + plan.getClickCount() + " clicks, " + plan.getTransferCount()
+                        + " transfers, " + plan.getMovedStackCount() + " stacks moved, " + plan.getEstimatedTicks()
+                        + " ticks");
+            }
+            log.info("Item lookups: " + tree.getItemsCacheHits() + " cache hits, " + tree.getItemsCacheMisses()
+                    + " misses");
+            log.info("Unknown items: " + tree.getDynamicItemsSize() + " known, " + tree.getDynamicItemsInsertions()
+                    + " added, " + tree.getDynamicItemsEvictions() + " forgotten");
         }
 
         //// Put hold item down, just in case
@@ -172,6 +300,94 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
         }
 
         globalContainer.applyChanges();
+        if(completed) {
+            lastSortFingerprint = computeFingerprint(globalContainer);
+        }
+    }
+
+    private static boolean isCraftingGridEmpty(@NotNull IContainerManager globalContainer) {
+        if(globalContainer.hasSection(ContainerSection.CRAFTING_IN)) {
+            for(@NotNull Slot craftingSlot : globalContainer.getSlots(ContainerSection.CRAFTING_IN)) {
+                if(craftingSlot.getHasStack()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The current state of the section, along with everything else the sorted layout depends on. The armor
+     * slots are included when sorting may equip armor.
+     */
+    @NotNull
+    private Fingerprint computeFingerprint(@NotNull IContainerManager globalContainer) {
+        long contentsHash = 1;
+        for(int i = 0; i < size; i++) {
+            contentsHash = hashStack(contentsHash, liveContainerMgr.getItemStack(i));
+        }
+        if(algorithm == SortingMethod.INVENTORY && sortArmorParts && globalContainer.hasSection(ContainerSection.ARMOR)) {
+            for(@NotNull Slot slot : globalContainer.getSlots(ContainerSection.ARMOR)) {
+                contentsHash = hashStack(contentsHash, slot.getStack());
+            }
+        }
+        return new Fingerprint(globalContainer.getContainer(), section, algorithm, rowSize, configRules, tree,
+                invertToolDamage, sortArmorParts, contentsHash);
+    }
+
+    private static long hashStack(long hash, @NotNull ItemStack stack) {
+        if(stack.isEmpty()) {
+            return hash * 31;
+        }
+        @Nullable NBTTagCompound tag = stack.getTagCompound();
+        hash = hash * 31 + Item.getIdFromItem(stack.getItem());
+        hash = hash * 31 + stack.getItemDamage();
+        hash = hash * 31 + stack.getCount();
+        return hash * 31 + ((tag != null) ? tag.hashCode() : 0);
+    }
+
+    /**
+     * Works out the clicks the sort would make, without touching the container. Unlike {@link #sort()}, the held item
+     * is not put down first and, for the inventory, the crafting grid and armor slots are left alone.
+     *
+     * @return The plan, or null if the sort would have to move stacks directly
+     */
+    @Nullable
+    public RearrangementPlan simulate() {
+        return computePlan();
+    }
+
+    @Nullable
+    private RearrangementPlan computePlan() {
+        snapshot.refresh();
+        containerMgr = snapshotContainerMgr;
+        computeLayout();
+        containerMgr = liveContainerMgr;
+
+        @Nullable RearrangementPlan result = RearrangementPlan.compute(containerMgr, snapshot.getContents());
+        if(result != null) {
+            result.setClicksPerTick(clicksPerTick);
+        }
+        return result;
+    }
+
+    /**
+     * Sorts the section managed by containerMgr, from scratch.
+     */
+    private void computeLayout() {
+        initSlotOrders();
+
+        if(algorithm != SortingMethod.DEFAULT) {
+            if(algorithm == SortingMethod.EVEN_STACKS) {
+                sortEvenStacks();
+            } else if(algorithm == SortingMethod.INVENTORY) {
+                sortMerge();
+            }
+            sortWithRules();
+        }
+
+        //// Sort remaining
+        defaultSorting();
     }
 
     private void sortWithRules() {
@@ -179,50 +395,46 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
         log.info("Applying rules.");
 
         // Sorts rule by rule, themselves being already sorted by decreasing priority
-        for(@NotNull InvTweaksConfigSortingRule rule : rules) {
+        for(int r = 0; r < rules.size(); r++) {
+            @NotNull InvTweaksConfigSortingRule rule = rules.get(r);
             int priority = rule.getPriority();
 
             if(log.isEnabled(InvTweaksConst.DEBUG)) {
                 log.info("Rule : " + rule.getKeyword() + "(" + priority + ")");
             }
 
-            // For every item in the inventory
-            for(int i = 0; i < size; i++) {
-                @NotNull ItemStack from = containerMgr.getItemStack(i);
+            if(size > LARGE_SECTION_SIZE) {
+                assignRuleSlots(r);
+                continue;
+            }
+
+            // For every item of the inventory matching the rule
+            @NotNull BitSet matchingSlots = ruleSlots[r];
+            for(int i = matchingSlots.nextSetBit(0); i >= 0; i = matchingSlots.nextSetBit(i + 1)) {
 
-                // If the rule is strong enough to move the item and it matches the item, move it
+                // If the rule is strong enough to move the item, move it
                 if(hasToBeMoved(i, priority) && lockPriorities[i] < priority) {
-                    // TODO: It looks like Mojang changed the internal name type to ResourceLocation. Evaluate how much of a pain that will be.
-                    @NotNull List<IItemTreeItem> fromItems = tree
-                            .getItems(from.getItem().getRegistryName().toString(), from.getItemDamage(), from.getTagCompound());
-                    if(tree.matches(fromItems, rule.getKeyword())) {
-
-                        // Test preferred slots
-                        int[] preferredSlots = rule.getPreferredSlots();
-                        int stackToMove = i;
-                        for(int k : preferredSlots) {
-                            // Move the stack!
-                            int moveResult = move(stackToMove, k, priority);
-                            if(moveResult != -1) {
-                                if(moveResult == k) {
-                                    break;
+
+                    // Test preferred slots
+                    int[] preferredSlots = rule.getPreferredSlots();
+                    int stackToMove = i;
+                    for(int k : preferredSlots) {
+                        // Move the stack!
+                        int moveResult = move(stackToMove, k, priority);
+                        if(moveResult != -1) {
+                            if(moveResult == k) {
+                                break;
+                            } else if(matchingSlots.get(moveResult)) {
+                                if(i >= moveResult) {
+                                    // Current or already-processed slot.
+                                    stackToMove = moveResult;
+                                    //j = -1; // POSSIBLE INFINITE LOOP. But having this missing may cause sorting to take a few tries to stabilize in specific situations.
                                 } else {
-                                    from = containerMgr.getItemStack(moveResult);
-                                    // TODO: It looks like Mojang changed the internal name type to ResourceLocation. Evaluate how much of a pain that will be.
-                                    fromItems = tree.getItems(from.getItem().getRegistryName().toString(), from.getItemDamage(), from.getTagCompound());
-                                    if(tree.matches(fromItems, rule.getKeyword())) {
-                                        if(i >= moveResult) {
-                                            // Current or already-processed slot.
-                                            stackToMove = moveResult;
-                                            //j = -1; // POSSIBLE INFINITE LOOP. But having this missing may cause sorting to take a few tries to stabilize in specific situations.
-                                        } else {
-                                            // The item will be processed later
-                                            break;
-                                        }
-                                    } else {
-                                        break;
-                                    }
+                                    // The item will be processed later
+                                    break;
                                 }
+                            } else {
+                                break;
                             }
                         }
                     }
@@ -240,6 +452,102 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
         }
     }
 
+    /**
+     * Puts the stacks matching a rule in its preferred slots with a single ordered assignment: the stacks are merged,
+     * sorted once and moved straight to their slot, instead of trying every preferred slot for every stack.
+     */
+    private void assignRuleSlots(int r) {
+        @NotNull InvTweaksConfigSortingRule rule = rules.get(r);
+        int priority = rule.getPriority();
+        @Nullable int[] preferredSlots = rule.getPreferredSlots();
+        if(preferredSlots == null) {
+            return;
+        }
+
+        // Stacks the rule is strong enough to move
+        @NotNull BitSet moving = new BitSet(size);
+        @NotNull List<Integer> stacks = new ArrayList<>();
+        @NotNull BitSet matchingSlots = ruleSlots[r];
+        for(int i = matchingSlots.nextSetBit(0); i >= 0; i = matchingSlots.nextSetBit(i + 1)) {
+            if(hasToBeMoved(i, priority) && lockPriorities[i] < priority && !frozenSlots[i]) {
+                moving.set(i);
+                stacks.add(i);
+            }
+        }
+        if(stacks.isEmpty()) {
+            return;
+        }
+
+        // Stacks of the same item end up next to each other, biggest first: merge them
+        @NotNull Comparator<Integer> order = (i, j) -> {
+            int result = sortKeys.compare(i, j, keywordOrder[i], keywordOrder[j]);
+            return (result != 0) ? result : Integer.compare(i, j);
+        };
+        stacks.sort(order);
+        int last = -1;
+        for(int i : stacks) {
+            if(last != -1 && canMergeStacks(containerMgr.getItemStack(i), containerMgr.getItemStack(last))) {
+                moveStack(i, last);
+            }
+            if(!containerMgr.getItemStack(i).isEmpty()) {
+                last = i;
+            }
+        }
+        stacks.removeIf(i -> containerMgr.getItemStack(i).isEmpty());
+        stacks.sort(order);
+
+        // Slots the stacks can go to, most preferred first
+        @NotNull List<Integer> slots = new ArrayList<>();
+        for(int k : preferredSlots) {
+            if(k < size && !frozenSlots[k] && lockPriorities[k] <= priority && (moving.get(k)
+                    || containerMgr.getItemStack(k).isEmpty() || rulePriority[k] < priority)) {
+                slots.add(k);
+            }
+        }
+
+        // Move every stack to its slot, keeping track of the stacks it swaps with
+        @NotNull Map<Integer, Integer> slotContents = new HashMap<>();
+        @NotNull int[] positions = new int[stacks.size()];
+        for(int k = 0; k < stacks.size(); k++) {
+            positions[k] = stacks.get(k);
+            slotContents.put(stacks.get(k), k);
+        }
+        for(int k = 0; k < Math.min(stacks.size(), slots.size()); k++) {
+            int from = positions[k], to = slots.get(k);
+            if(from == to) {
+                markAsMoved(to, priority);
+                continue;
+            }
+
+            @Nullable Integer displaced = slotContents.get(to);
+            @NotNull ItemStack fromStack = containerMgr.getItemStack(from), toStack = containerMgr.getItemStack(to);
+            // Moving onto a stack of the same item merges them: only do it when it amounts to swapping them
+            boolean sameItem = areItemsStackable(fromStack, toStack);
+            if(!sameItem || fromStack.getCount() != toStack.getCount()) {
+                if(sameItem && fromStack.getCount() != fromStack.getMaxStackSize()) {
+                    continue;
+                }
+                if(!moveStack(from, to)) {
+                    continue;
+                }
+            }
+
+            slotContents.put(to, k);
+            positions[k] = to;
+            if(displaced != null) {
+                slotContents.put(from, displaced);
+                positions[displaced] = from;
+            } else {
+                slotContents.remove(from);
+            }
+            int keyword = keywordOrder[to];
+            keywordOrder[to] = keywordOrder[from];
+            keywordOrder[from] = keyword;
+            markAsNotMoved(from);
+            markAsMoved(to, priority);
+        }
+    }
+
     private void sortInventory(@NotNull IContainerManager globalContainer) {
         //// Move items out of the crafting slots
         log.info("Handling crafting slots.");
@@ -261,34 +569,38 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
             }
         }
 
-        sortMergeArmor(globalContainer);
+        sortArmor(globalContainer);
     }
 
-    private void sortMergeArmor(@NotNull IContainerManager globalContainer) {
-        //// Merge stacks to fill the ones in locked slots
-        //// + Move armor parts to the armor slots
-        log.info("Merging stacks.");
+    private void sortArmor(@NotNull IContainerManager globalContainer) {
+        //// Move armor parts to the armor slots
+        log.info("Moving armor parts.");
         for(int i = size - 1; i >= 0; i--) {
             @NotNull ItemStack from = containerMgr.getItemStack(i);
             if(!from.isEmpty()) {
-                // Move armor parts
-                // Item
                 @NotNull Item fromItem = from.getItem();
                 if(fromItem.isDamageable()) {
                     moveArmor(globalContainer, i, from, fromItem);
                 }
-                // Stackable objects are never damageable
-                else {
-                    mergeItem(i, from);
-                }
+            }
+        }
+    }
+
+    private void sortMerge() {
+        //// Merge stacks to fill the ones in locked slots
+        log.info("Merging stacks.");
+        for(int i = size - 1; i >= 0; i--) {
+            @NotNull ItemStack from = containerMgr.getItemStack(i);
+            // Stackable objects are never damageable
+            if(!from.isEmpty() && !from.getItem().isDamageable()) {
+                mergeItem(i, from);
             }
         }
     }
 
     private void mergeItem(int i, @NotNull ItemStack from) {
-        int j = 0;
-        for(Integer lockPriority : lockPriorities) {
-            if(lockPriority > 0) {
+        for(int j = 0; j < size; j++) {
+            if(lockPriorities[j] > 0) {
                 @NotNull ItemStack to = containerMgr.getItemStack(j);
                 if(!to.isEmpty() && areItemsStackable(from, to)) {
                     move(i, j, Integer.MAX_VALUE);
@@ -298,7 +610,6 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
                     }
                 }
             }
-            j++;
         }
     }
 
@@ -343,76 +654,82 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
     private void sortEvenStacks() {
         log.info("Distributing items.");
 
-        //item and slot counts for each unique item
-        @NotNull HashMap<Pair<String, Integer>, int[]> itemCounts = new HashMap<>();
+        //group the stacks by item ID, damage and tags
+        @NotNull Map<Long, List<Integer>> groupsByKey = new HashMap<>();
+        @NotNull List<List<Integer>> groups = new ArrayList<>();
         for(int i = 0; i < size; i++) {
             @NotNull ItemStack stack = containerMgr.getItemStack(i);
-            if(!stack.isEmpty()) {
-                // TODO: It looks like Mojang changed the internal name type to ResourceLocation. Evaluate how much of a pain that will be.
-                @NotNull Pair<String, Integer> item = Pair.of(stack.getItem().getRegistryName().toString(), stack.getItemDamage());
-                int[] count = itemCounts.get(item);
-                if(count == null) {
-                    @NotNull int[] newCount = {stack.getCount(), 1};
-                    itemCounts.put(item, newCount);
-                } else {
-                    count[0] += stack.getCount(); //amount of item
-                    count[1]++;                      //slots with item
+            if(stack.isEmpty()) {
+                continue;
+            }
+            long itemKey = ((long) Item.getIdFromItem(stack.getItem()) << 32) | (stack.getItemDamage() & 0xFFFFFFFFL);
+            @NotNull List<Integer> candidates = groupsByKey.computeIfAbsent(itemKey, k -> new ArrayList<>());
+            @Nullable List<Integer> members = null;
+            for(int candidate : candidates) {
+                if(ItemStack.areItemStackTagsEqual(containerMgr.getItemStack(groups.get(candidate).get(0)), stack)) {
+                    members = groups.get(candidate);
+                    break;
                 }
             }
+            if(members == null) {
+                candidates.add(groups.size());
+                members = new ArrayList<>();
+                groups.add(members);
+            }
+            members.add(i);
         }
 
         //handle each unique item separately
-        for(@NotNull Entry<Pair<String, Integer>, int[]> entry : itemCounts.entrySet()) {
-            Pair<String, Integer> item = entry.getKey();
-            int[] count = entry.getValue();
-            int numPerSlot = count[0] / count[1];  //totalNumber/numberOfSlots
+        @NotNull int[] group = new int[size];
+        @NotNull int[] targets = new int[size];
+        for(@NotNull List<Integer> members : groups) {
+            //slots holding the item, and total amount
+            @NotNull ItemStack first = containerMgr.getItemStack(members.get(0));
+            int groupSize = 0, total = 0;
+            for(int j : members) {
+                group[groupSize++] = j;
+                total += containerMgr.getItemStack(j).getCount();
+            }
+            int numPerSlot = total / groupSize;
 
             //skip hacked itemstacks that are larger than their max size
             //no idea why they would be here, but may as well account for them anyway
-            // TODO: ResourceLocation
-            if(numPerSlot <= new ItemStack(Item.REGISTRY.getObject(new ResourceLocation(item.getLeft())), 1, 0).getMaxStackSize()) {
-                //linkedlists to store which stacks have too many/few items
-                @NotNull LinkedList<Integer> smallStacks = new LinkedList<>();
-                @NotNull LinkedList<Integer> largeStacks = new LinkedList<>();
-                for(int i = 0; i < size; i++) {
-                    @NotNull ItemStack stack = containerMgr.getItemStack(i);
-                    // TODO: ResourceLocation
-                    if(!stack.isEmpty() && Pair.of(stack.getItem().getRegistryName().toString(), stack.getItemDamage())
-                            .equals(item)) {
-                        int stackSize = stack.getCount();
-                        if(stackSize > numPerSlot) {
-                            largeStacks.offer(i);
-                        } else if(stackSize < numPerSlot) {
-                            smallStacks.offer(i);
-                        }
-                    }
+            if(numPerSlot > first.getMaxStackSize()) {
+                continue;
+            }
+
+            //every slot gets the same amount, and all leftover goes into one stack for easy removal: the last one
+            //holding more than its share
+            int leftoverSlot = -1;
+            for(int k = 0; k < groupSize; k++) {
+                targets[group[k]] = numPerSlot;
+                if(containerMgr.getItemStack(group[k]).getCount() > numPerSlot) {
+                    leftoverSlot = group[k];
                 }
+            }
+            if(leftoverSlot != -1) {
+                targets[leftoverSlot] += total - numPerSlot * groupSize;
+            }
 
-                //move items from stacks with too many to those with too little
-                while((!smallStacks.isEmpty())) {
-                    int largeIndex = largeStacks.peek();
-                    int largeSize = containerMgr.getItemStack(largeIndex).getCount();
-                    int smallIndex = smallStacks.peek();
-                    int smallSize = containerMgr.getItemStack(smallIndex).getCount();
-                    containerMgr
-                            .moveSome(largeIndex, smallIndex, Math.min(numPerSlot - smallSize, largeSize - numPerSlot));
-
-                    //update stack lists
-                    largeSize = containerMgr.getItemStack(largeIndex).getCount();
-                    smallSize = containerMgr.getItemStack(smallIndex).getCount();
-                    if(largeSize == numPerSlot) {
-                        largeStacks.remove();
-                    }
-                    if(smallSize == numPerSlot) {
-                        smallStacks.remove();
-                    }
+            //move items from stacks with too many to those with too little, each transfer completing one of them
+            int large = 0, small = 0;
+            while(true) {
+                while(large < groupSize && containerMgr.getItemStack(group[large]).getCount() <= targets[group[large]]) {
+                    large++;
+                }
+                while(small < groupSize && containerMgr.getItemStack(group[small]).getCount() >= targets[group[small]]) {
+                    small++;
+                }
+                if(large == groupSize || small == groupSize) {
+                    break;
                 }
 
-                //put all leftover into one stack for easy removal
-                while(largeStacks.size() > 1) {
-                    int largeIndex = largeStacks.poll();
-                    int largeSize = containerMgr.getItemStack(largeIndex).getCount();
-                    containerMgr.moveSome(largeIndex, largeStacks.peek(), largeSize - numPerSlot);
+                int largeSize = containerMgr.getItemStack(group[large]).getCount();
+                int smallSize = containerMgr.getItemStack(group[small]).getCount();
+                if(!moveSome(group[large], group[small],
+                        Math.min(largeSize - targets[group[large]], targets[group[small]] - smallSize))
+                        || containerMgr.getItemStack(group[large]).getCount() == largeSize) {
+                    break;
                 }
             }
         }
@@ -423,38 +740,109 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
         }
     }
 
+    /**
+     * Puts the stacks that weren't placed by rules in order, in the first free slots. Stacks of the same item are
+     * merged first, then the remaining stacks are sorted once and moved straight to their slot.
+     */
     private void defaultSorting() {
         log.info("Default sorting.");
 
-        @NotNull ArrayList<Integer> remaining = new ArrayList<>(), nextRemaining = new ArrayList<>();
+        // Free slots, and the stacks to put in them
+        @NotNull List<Integer> freeSlots = new ArrayList<>();
         for(int i = 0; i < size; i++) {
-            if(hasToBeMoved(i, 1)) {
+            if(!frozenSlots[i] && lockPriorities[i] <= 1
+                    && (containerMgr.getItemStack(i).isEmpty() || hasToBeMoved(i, 1))) {
+                freeSlots.add(i);
+            }
+        }
+
+        mergeRemaining(freeSlots);
+
+        @NotNull List<Integer> remaining = new ArrayList<>();
+        for(int i : freeSlots) {
+            if(!containerMgr.getItemStack(i).isEmpty()) {
                 remaining.add(i);
-                nextRemaining.add(i);
             }
         }
+        remaining.sort((i, j) -> {
+            int result = sortKeys.compare(i, j, keywordOrder[i], keywordOrder[j]);
+            return (result != 0) ? result : Integer.compare(i, j);
+        });
 
-        int iterations = 0;
-        while(remaining.size() > 0 && iterations++ < 50) {
-            for(int i : remaining) {
-                if(hasToBeMoved(i, 1)) {
-                    for(int j = 0; j < size; j++) {
-                        if(move(i, j, 1) != -1) {
-                            nextRemaining.remove((Integer) j);
-                            break;
-                        }
-                    }
-                } else {
-                    nextRemaining.remove((Integer) i);
+        // Move every stack to its slot, keeping track of the stacks it swaps with
+        @NotNull int[] slotContents = new int[size];
+        @NotNull int[] positions = new int[size];
+        Arrays.fill(slotContents, -1);
+        for(int i : remaining) {
+            slotContents[i] = i;
+            positions[i] = i;
+        }
+        for(int k = 0; k < remaining.size(); k++) {
+            int stack = remaining.get(k);
+            int from = positions[stack], to = freeSlots.get(k);
+            if(from == to) {
+                continue;
+            }
+
+            int displaced = slotContents[to];
+            @NotNull ItemStack fromStack = containerMgr.getItemStack(from), toStack = containerMgr.getItemStack(to);
+            // Moving onto a stack of the same item merges them: only do it when it amounts to swapping them
+            boolean sameItem = areItemsStackable(fromStack, toStack);
+            if(!sameItem || fromStack.getCount() != toStack.getCount()) {
+                if(sameItem && fromStack.getCount() != fromStack.getMaxStackSize()) {
+                    continue;
+                }
+                if(!moveStack(from, to)) {
+                    continue;
                 }
             }
-            remaining.clear();
-            remaining.addAll(nextRemaining);
+
+            slotContents[to] = stack;
+            positions[stack] = to;
+            slotContents[from] = displaced;
+            if(displaced != -1) {
+                positions[displaced] = from;
+            }
+            int order = keywordOrder[to];
+            keywordOrder[to] = keywordOrder[from];
+            keywordOrder[from] = order;
+            markAsMoved(to, 1);
         }
-        if(iterations == 100) {
-            log.warn("Sorting takes too long, aborting.");
+    }
+
+    /**
+     * Tops up the stacks with room left using the stacks of the same item in the free slots, latest ones first.
+     */
+    private void mergeRemaining(@NotNull List<Integer> freeSlots) {
+        @NotNull boolean[] free = new boolean[size];
+        for(int i : freeSlots) {
+            free[i] = true;
+        }
+
+        @NotNull Map<Item, List<Integer>> stacksByItem = new IdentityHashMap<>();
+        for(int i = 0; i < size; i++) {
+            if(!frozenSlots[i] && !containerMgr.getItemStack(i).isEmpty()) {
+                stacksByItem.computeIfAbsent(containerMgr.getItemStack(i).getItem(), k -> new ArrayList<>()).add(i);
+            }
         }
 
+        for(int k = freeSlots.size() - 1; k >= 0; k--) {
+            int i = freeSlots.get(k);
+            @NotNull ItemStack from = containerMgr.getItemStack(i);
+            if(from.isEmpty() || !from.isStackable()) {
+                continue;
+            }
+            for(int j : stacksByItem.get(from.getItem())) {
+                // Stacks placed by rules first, then the earlier free ones
+                if(j != i && (!free[j] || j < i) && canMergeStacks(from, containerMgr.getItemStack(j))) {
+                    moveStack(i, j);
+                    from = containerMgr.getItemStack(i);
+                    if(from.isEmpty()) {
+                        break;
+                    }
+                }
+            }
+        }
     }
 
     private boolean canSwapSlots(int i, int j, int priority) {
@@ -492,8 +880,8 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
                 rulePriority[i] = -1;
                 keywordOrder[i] = -1;
                 rulePriority[j] = priority;
-                keywordOrder[j] = getItemOrder(from);
-                if(containerMgr.move(i, j)) {
+                keywordOrder[j] = getSlotOrder(i);
+                if(moveStack(i, j)) {
                     return j;
                 } else {
                     return -1;
@@ -506,7 +894,7 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
                     keywordOrder[j] = keywordOrder[i];
                     rulePriority[j] = priority;
                     rulePriority[i] = -1;
-                    boolean success = containerMgr.move(i, j);
+                    boolean success = moveStack(i, j);
 
                     if(success) {
                         @NotNull ItemStack remains = containerMgr.getItemStack(i);
@@ -522,13 +910,13 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
                                 }
                             }
                             if(dropSlot != i) {
-                                if(!containerMgr.move(i, dropSlot)) {
+                                if(!moveStack(i, dropSlot)) {
                                     // TODO: This is a potentially bad situation: One move succeeded, then the rest failed.
                                     return -1;
                                 }
                             }
                             rulePriority[dropSlot] = -1;
-                            keywordOrder[dropSlot] = getItemOrder(remains);
+                            keywordOrder[dropSlot] = getSlotOrder(dropSlot);
                             return dropSlot;
                         } else {
                             return j;
@@ -557,29 +945,120 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
     }
 
     private boolean isOrderedBefore(int i, int j) {
-        @NotNull ItemStack iStack = containerMgr.getItemStack(i), jStack = containerMgr.getItemStack(j);
+        return sortKeys.compare(i, j, keywordOrder[i], keywordOrder[j]) < 0;
+    }
 
-        return InvTweaks.getInstance().compareItems(iStack, jStack, keywordOrder[i], keywordOrder[j]) < 0;
+    /**
+     * Moves a stack, keeping the sort keys up to date.
+     */
+    private boolean moveStack(int i, int j) {
+        @Nullable ItemKey keyI = slotKeys[i], keyJ = slotKeys[j];
+        boolean result = containerMgr.move(i, j);
+        updateSlotKey(i, keyI, keyJ);
+        updateSlotKey(j, keyI, keyJ);
+        return result;
     }
 
-    private int getItemOrder(@NotNull ItemStack itemStack) {
-        // TODO: It looks like Mojang changed the internal name type to ResourceLocation. Evaluate how much of a pain that will be.
-        @NotNull List<IItemTreeItem> items = tree.getItems(itemStack.getItem().getRegistryName().toString(), itemStack.getItemDamage(), itemStack.getTagCompound());
-        return (items.size() > 0) ? items.get(0).getOrder() : Integer.MAX_VALUE;
+    private boolean moveSome(int i, int j, int amount) {
+        @Nullable ItemKey keyI = slotKeys[i], keyJ = slotKeys[j];
+        boolean result = containerMgr.moveSome(i, j, amount);
+        updateSlotKey(i, keyI, keyJ);
+        updateSlotKey(j, keyI, keyJ);
+        return result;
     }
 
-    private void computeLineSortingRules(int rowSize, boolean horizontal) {
-        // Abort if rowSize is too great.
-        if(rowSize > 9) {
+    private int getSlotOrder(int slot) {
+        return (slotKeys[slot] != null) ? slotKeys[slot].order : -1;
+    }
+
+    /**
+     * @return The key of the given stack's item, computing which rules match it the first time the item is met
+     */
+    @Nullable
+    private ItemKey getItemKey(@NotNull ItemStack stack) {
+        if(stack.isEmpty()) {
+            return null;
+        }
+
+        @NotNull List<IItemTreeItem> items = tree.getItems(stack.getItem(), stack.getItemDamage(), stack.getTagCompound());
+        @Nullable ItemKey key = itemKeys.get(items);
+        if(key == null) {
+            @NotNull BitSet matchingRules = new BitSet(rules.size());
+            for(int r = 0; r < rules.size(); r++) {
+                if(tree.matches(items, rules.get(r).getKeyword())) {
+                    matchingRules.set(r);
+                }
+            }
+            key = new ItemKey(stack, (items.size() > 0) ? items.get(0).getOrder() : Integer.MAX_VALUE, matchingRules);
+            itemKeys.put(items, key);
+        }
+        return key;
+    }
+
+    private void setSlotKey(int slot, @Nullable ItemKey key) {
+        @Nullable ItemKey oldKey = slotKeys[slot];
+        if(oldKey == key) {
             return;
         }
+        if(oldKey != null) {
+            for(int r = oldKey.rules.nextSetBit(0); r >= 0; r = oldKey.rules.nextSetBit(r + 1)) {
+                ruleSlots[r].clear(slot);
+            }
+        }
+        if(key != null) {
+            for(int r = key.rules.nextSetBit(0); r >= 0; r = key.rules.nextSetBit(r + 1)) {
+                ruleSlots[r].set(slot);
+            }
+        }
+        slotKeys[slot] = key;
+    }
 
+    /**
+     * Updates the keys of a slot after a move. Stacks only come from the two slots involved, so their keys are reused
+     * rather than looked up in the tree again.
+     */
+    private void updateSlotKey(int slot, @Nullable ItemKey keyI, @Nullable ItemKey keyJ) {
+        @NotNull ItemStack stack = containerMgr.getItemStack(slot);
+        if(stack.isEmpty()) {
+            setSlotKey(slot, null);
+        } else if(keyI != null && keyI.matches(stack)) {
+            setSlotKey(slot, keyI);
+        } else if(keyJ != null && keyJ.matches(stack)) {
+            setSlotKey(slot, keyJ);
+        } else {
+            setSlotKey(slot, getItemKey(stack));
+        }
+        sortKeys.update(slot);
+    }
+
+    private void computeLineSortingRules(int rowSize, boolean horizontal) {
         rules = new ArrayList<>();
 
+        // Abort if the section isn't made of rows
+        if(rowSize <= 0 || size < rowSize) {
+            return;
+        }
 
         @NotNull Map<IItemTreeItem, Integer> stats = computeContainerStats();
         @NotNull List<IItemTreeItem> itemOrder = new ArrayList<>();
 
+        // No need to compute rules for an empty chest
+        if(stats.isEmpty()) {
+            return;
+        }
+
+        // Reuse the rules if the chest holds the same amounts of the same items as a recent one
+        if(lineRulesTree != tree) {
+            lineRulesCache.clear();
+            lineRulesTree = tree;
+        }
+        @NotNull String cacheKey = getLineRulesCacheKey(stats, rowSize, horizontal);
+        @Nullable List<InvTweaksConfigSortingRule> cachedRules = lineRulesCache.get(cacheKey);
+        if(cachedRules != null) {
+            rules = cachedRules;
+            return;
+        }
+
         int distinctItems = stats.size();
         int columnSize = getContainerColumnSize(rowSize);
         int spaceWidth;
@@ -590,24 +1069,13 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
             remainingStacks += stacks;
         }
 
-        // No need to compute rules for an empty chest
-        if(distinctItems == 0) {
-            return;
-        }
-
-        // (Partially) sort stats by decreasing item stack count
-        @NotNull List<IItemTreeItem> unorderedItems = new ArrayList<>(stats.keySet());
-        boolean hasStacksToOrderFirst = true;
-        while(hasStacksToOrderFirst) {
-            hasStacksToOrderFirst = false;
-            for(IItemTreeItem item : unorderedItems) {
-                Integer value = stats.get(item);
-                if(value > ((horizontal) ? rowSize : columnSize) && !itemOrder.contains(item)) {
-                    hasStacksToOrderFirst = true;
-                    itemOrder.add(item);
-                    unorderedItems.remove(item);
-                    break;
-                }
+        // (Partially) sort stats: items that don't fit in one line first
+        @NotNull List<IItemTreeItem> unorderedItems = new ArrayList<>();
+        for(@NotNull Map.Entry<IItemTreeItem, Integer> entry : stats.entrySet()) {
+            if(entry.getValue() > ((horizontal) ? rowSize : columnSize)) {
+                itemOrder.add(entry.getKey());
+            } else {
+                unorderedItems.add(entry.getKey());
             }
         }
         unorderedItems.sort(Collections.reverseOrder());
@@ -622,8 +1090,9 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
             spaceHeight = columnSize / ((distinctItems + rowSize - 1) / rowSize);
         }
 
-        char row = 'a', maxRow = (char) (row - 1 + columnSize);
-        char column = '1', maxColumn = (char) (column - 1 + rowSize);
+        // Rows and columns are numbered from 0, so that rules aren't limited to 9 columns like constraints
+        int row = 0, maxRow = columnSize - 1;
+        int column = 0, maxColumn = rowSize - 1;
 
         // Create rules
         for(@NotNull IItemTreeItem item : itemOrder) {
@@ -659,11 +1128,8 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
             }
 
             // Create rule
-            String constraint = String.format("%c%c-%c%c", row, column, (char) (row - 1 + thisSpaceHeight), (char) (column - 1 + thisSpaceWidth));
-            if(!horizontal) {
-                constraint += 'v';
-            }
-            rules.add(new InvTweaksConfigSortingRule(tree, constraint, item.getName(), size, rowSize));
+            rules.add(new InvTweaksConfigSortingRule(tree, row, column, row - 1 + thisSpaceHeight,
+                    column - 1 + thisSpaceWidth, !horizontal, item.getName(), size, rowSize));
 
             // Check if ther's still room for more rules
             availableSlots -= thisSpaceHeight * thisSpaceWidth;
@@ -674,14 +1140,14 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
                     if(column + thisSpaceWidth + spaceWidth <= maxColumn + 1) {
                         column += thisSpaceWidth;
                     } else {
-                        column = '1';
+                        column = 0;
                         row += thisSpaceHeight;
                     }
                 } else {
                     if(row + thisSpaceHeight + spaceHeight <= maxRow + 1) {
                         row += thisSpaceHeight;
                     } else {
-                        row = 'a';
+                        row = 0;
                         column += thisSpaceWidth;
                     }
                 }
@@ -693,14 +1159,25 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
             }
         }
 
-        String defaultRule;
         if(horizontal) {
-            defaultRule = maxRow + "1-a" + maxColumn;
+            rules.add(new InvTweaksConfigSortingRule(tree, maxRow, 0, 0, maxColumn, false,
+                    tree.getRootCategory().getName(), size, rowSize));
         } else {
-            defaultRule = "a" + maxColumn + "-" + maxRow + "1v";
+            rules.add(new InvTweaksConfigSortingRule(tree, 0, maxColumn, maxRow, 0, true,
+                    tree.getRootCategory().getName(), size, rowSize));
         }
-        rules.add(new InvTweaksConfigSortingRule(tree, defaultRule, tree.getRootCategory().getName(), size, rowSize));
 
+        lineRulesCache.put(cacheKey, rules);
+    }
+
+    @NotNull
+    private String getLineRulesCacheKey(@NotNull Map<IItemTreeItem, Integer> stats, int rowSize, boolean horizontal) {
+        @NotNull List<String> counts = new ArrayList<>(stats.size());
+        for(@NotNull Map.Entry<IItemTreeItem, Integer> entry : stats.entrySet()) {
+            counts.add(entry.getKey().getName() + "=" + entry.getValue());
+        }
+        Collections.sort(counts);
+        return size + "/" + rowSize + "/" + horizontal + "/" + String.join(",", counts);
     }
 
     @NotNull
@@ -717,7 +1194,7 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
                 IItemTreeItem item = itemSearch.get(itemSearchKey);
                 if(item == null) {
                     // TODO: It looks like Mojang changed the internal name type to ResourceLocation. Evaluate how much of a pain that will be.
-                    item = tree.getItems(stack.getItem().getRegistryName().toString(), stack.getItemDamage(), stack.getTagCompound()).get(0);
+                    item = tree.getItems(stack.getItem(), stack.getItemDamage(), stack.getTagCompound()).get(0);
                     itemSearch.put(itemSearchKey, item);
                     stats.put(item, 1);
                 } else {
@@ -733,4 +1210,76 @@ public class InvTweaksHandlerSorting extends InvTweaksObfuscation {
         return size / rowSize;
     }
 
+    /**
+     * Contents of a section and sorting settings: sorting again gives the same result as long as none of them changes.
+     * The configuration parts are compared by identity, as they are replaced on reload.
+     */
+    private static class Fingerprint {
+        private final Container container;
+        private final ContainerSection section;
+        private final SortingMethod algorithm;
+        private final int rowSize;
+        private final List<InvTweaksConfigSortingRule> rules;
+        private final InvTweaksItemTree tree;
+        private final boolean invertToolDamage;
+        private final boolean sortArmorParts;
+        private final long contentsHash;
+
+        private Fingerprint(Container container_, ContainerSection section_, SortingMethod algorithm_, int rowSize_,
+                            List<InvTweaksConfigSortingRule> rules_, InvTweaksItemTree tree_, boolean invertToolDamage_,
+                            boolean sortArmorParts_, long contentsHash_) {
+            container = container_;
+            section = section_;
+            algorithm = algorithm_;
+            rowSize = rowSize_;
+            rules = rules_;
+            tree = tree_;
+            invertToolDamage = invertToolDamage_;
+            sortArmorParts = sortArmorParts_;
+            contentsHash = contentsHash_;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if(!(o instanceof Fingerprint)) {
+                return false;
+            }
+            @NotNull Fingerprint other = (Fingerprint) o;
+            return container == other.container && section == other.section && algorithm == other.algorithm
+                    && rowSize == other.rowSize && rules == other.rules && tree == other.tree
+                    && invertToolDamage == other.invertToolDamage && sortArmorParts == other.sortArmorParts
+                    && contentsHash == other.contentsHash;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(contentsHash);
+        }
+    }
+
+    /**
+     * An item as seen by the tree, with the rules matching it.
+     */
+    private static class ItemKey {
+        @NotNull
+        private final ItemStack template;
+        private final int order;
+        @NotNull
+        private final BitSet rules;
+
+        private ItemKey(@NotNull ItemStack stack, int order_, @NotNull BitSet rules_) {
+            template = stack.copy();
+            order = order_;
+            rules = rules_;
+        }
+
+        /**
+         * @return true if the stack is of the same item, damage and tags as the one the key was made for
+         */
+        private boolean matches(@NotNull ItemStack stack) {
+            @Nullable NBTTagCompound tag = stack.getTagCompound();
+            return stack.getItem() == template.getItem() && stack.getItemDamage() == template.getItemDamage()
+                    && (tag == null ? !template.hasTagCompound() : tag.equals(template.getTagCompound()));
+        }
+    }
 }
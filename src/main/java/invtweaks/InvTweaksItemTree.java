@@ -9,6 +9,7 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.JsonToNBT;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTUtil;
+import net.minecraft.util.ResourceLocation;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.oredict.OreDictionary;
 import org.apache.logging.log4j.Logger;
@@ -16,10 +17,20 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 
 /**
  * Contains the whole hierarchy of categories and items, as defined in the XML item tree. Is used to recognize keywords
  * and store item orders.
+ * <p>
+ * Lookups never lock and can be done from any thread. Changes (loading, late ore registrations, API additions) are
+ * expected from one thread at a time; items are fully built before being published in the indexes.
  *
  * @author Jimeo Wan
  */
@@ -27,29 +38,102 @@ public class InvTweaksItemTree implements IItemTree {
     public static final String UNKNOWN_ITEM = "unknown";
 
     private static final Logger log = InvTweaks.log;
+    private static final int ITEMS_CACHE_SIZE = 1024;
+    private static final int DYNAMIC_ITEMS_SIZE = 4096;
     @Nullable
     private static List<IItemTreeItem> defaultItems = null;
     /**
      * All categories, stored by name
      */
     @NotNull
-    private Map<String, IItemTreeCategory> categories = new HashMap<>();
+    private Map<String, IItemTreeCategory> categories = new ConcurrentHashMap<>();
     /**
      * Items stored by ID. A same ID can hold several names.
      */
     @NotNull
-    private Map<String, List<IItemTreeItem>> itemsById = new HashMap<>(500);
+    private Map<String, List<IItemTreeItem>> itemsById = new ConcurrentHashMap<>(500);
     /**
      * Items stored by name. A same name can match several IDs.
      */
     @NotNull
-    private Map<String, List<IItemTreeItem>> itemsByName = new HashMap<>(500);
+    private Map<String, List<IItemTreeItem>> itemsByName = new ConcurrentHashMap<>(500);
+    /**
+     * Items stored by resolved Item reference, sharing the lists of itemsById. Allows stack lookups without building
+     * registry name strings. IDs that can't be resolved yet are looked up by name once, then remembered here.
+     */
+    @NotNull
+    private Map<Item, List<IItemTreeItem>> itemsByItem = new ConcurrentHashMap<>(500);
+
+    /**
+     * Results of getItems(), by item/damage/NBT. Entries are dropped whenever the items of their ID change.
+     */
+    @NotNull
+    private ConcurrentLruMap<CacheKey, List<IItemTreeItem>> itemsCache = new ConcurrentLruMap<>(ITEMS_CACHE_SIZE,
+            null);
+    @NotNull
+    private final AtomicInteger itemsCacheHits = new AtomicInteger();
+    @NotNull
+    private final AtomicInteger itemsCacheMisses = new AtomicInteger();
+
+    /**
+     * Depth of every keyword (category or item name), as findKeywordDepth would return it from the root category.
+     * Rebuilt when dirty, otherwise kept up to date when items and categories are added.
+     */
+    @NotNull
+    private volatile Map<String, Integer> keywordDepths = new ConcurrentHashMap<>(500);
+    @NotNull
+    private volatile Map<IItemTreeCategory, Integer> categoryDepths = new ConcurrentHashMap<>();
+    private volatile boolean keywordDepthsDirty = true;
+    /**
+     * Category orders already looked up, by keyword
+     */
+    @NotNull
+    private Map<String, Integer> categoryOrders = new ConcurrentHashMap<>();
+
+    @NotNull
+    private Map<String, IItemTreeItem> dynamicItemsByName = new ConcurrentHashMap<>();
+    /**
+     * Items made up for stacks that aren't in the tree, by "id-damage". They are kept out of the tree itself, and the
+     * least recently used ones are forgotten when there are too many, along with the cached lookups returning them.
+     */
+    @NotNull
+    private ConcurrentLruMap<String, List<IItemTreeItem>> dynamicItems = new ConcurrentLruMap<>(DYNAMIC_ITEMS_SIZE,
+            (name, items) -> {
+                for(@NotNull IItemTreeItem item : items) {
+                    dynamicItemsByName.remove(item.getName(), item);
+                    invalidateCachedItems(item.getId());
+                }
+            });
+    /**
+     * Damage ranges, by the name prefix of their items
+     */
+    @NotNull
+    private Map<String, List<InvTweaksItemTreeRangeItem>> rangesByPrefix = new ConcurrentHashMap<>();
+    @NotNull
+    private final AtomicInteger dynamicItemsInsertions = new AtomicInteger();
 
     private String rootCategory;
+    /**
+     * Ore dictionary entries of the tree, by ore name, to catch ores registered after the tree was loaded
+     */
     @NotNull
-    private List<OreDictInfo> oresRegistered = new ArrayList<>();
+    private Map<String, List<OreDictInfo>> oresRegistered = new ConcurrentHashMap<>();
+    /**
+     * Time spent handling ore dictionary entries, all trees included
+     */
+    @NotNull
+    private static final AtomicLong oreHandlingTime = new AtomicLong();
+    @NotNull
+    private static final AtomicInteger oreEventCount = new AtomicInteger();
+    /**
+     * When greater than 0, the derived indexes (lookup cache, keyword depths, category orders) aren't updated for
+     * each added item, but invalidated once at the end of the batch.
+     */
+    private int batchDepth = 0;
+    private boolean batchChanged = false;
 
-    private int highestOrder = 0;
+    private volatile int highestOrder = 0;
+    private int categoryCount = 0;
 
     public InvTweaksItemTree() {
         reset();
@@ -67,6 +151,16 @@ public class InvTweaksItemTree implements IItemTree {
         categories.clear();
         itemsByName.clear();
         itemsById.clear();
+        itemsByItem.clear();
+        itemsCache.clear();
+        categoryCount = 0;
+        keywordDepths = new ConcurrentHashMap<>(500);
+        categoryDepths = new ConcurrentHashMap<>();
+        keywordDepthsDirty = true;
+        categoryOrders.clear();
+        dynamicItems.clear();
+        dynamicItemsByName.clear();
+        rangesByPrefix.clear();
 
     }
 
@@ -90,7 +184,20 @@ public class InvTweaksItemTree implements IItemTree {
 
         // The keyword is a category
         IItemTreeCategory category = getCategory(keyword);
-        if(category != null) {
+        if(category instanceof InvTweaksItemTreeCategory && ((InvTweaksItemTreeCategory) category).isIndexed()) {
+            // The lists given by getItems() hold every tree item matching the stack, so the category contains one
+            // of them only if one of them is itself below the category.
+            int ordinal = ((InvTweaksItemTreeCategory) category).getOrdinal();
+            for(IItemTreeItem item : items) {
+                if(item instanceof InvTweaksItemTreeItem) {
+                    if(((InvTweaksItemTreeItem) item).isInCategory(ordinal)) {
+                        return true;
+                    }
+                } else if(category.contains(item)) {
+                    return true;
+                }
+            }
+        } else if(category != null) {
             for(IItemTreeItem item : items) {
                 if(category.contains(item)) {
                     return true;
@@ -105,12 +212,21 @@ public class InvTweaksItemTree implements IItemTree {
 
     @Override
     public int getKeywordDepth(String keyword) {
-        try {
-            return getRootCategory().findKeywordDepth(keyword);
-        } catch(NullPointerException e) {
-            log.error("The root category is missing: " + e.getMessage());
+        if(keywordDepthsDirty && !buildKeywordDepths()) {
             return 0;
         }
+        Integer depth = keywordDepths.get(keyword);
+        if(depth == null) {
+            // Items of damage ranges are direct children of the range category
+            @Nullable InvTweaksItemTreeRangeItem range = findRange(keyword);
+            if(range != null) {
+                Integer categoryDepth = (range.getCategory() != null) ? categoryDepths.get(range.getCategory()) : null;
+                return (categoryDepth != null) ? categoryDepth + 1 : -1;
+            }
+            // Made up items are seen as direct children of the root category
+            return dynamicItemsByName.containsKey(keyword) ? 1 : -1;
+        }
+        return depth;
     }
 
     @Override
@@ -119,13 +235,77 @@ public class InvTweaksItemTree implements IItemTree {
         if(items != null && items.size() != 0) {
             return items.get(0).getOrder();
         } else {
-            try {
-                return getRootCategory().findCategoryOrder(keyword);
-            } catch(NullPointerException e) {
-                log.error("The root category is missing: " + e.getMessage());
-                return -1;
+            Integer order = categoryOrders.get(keyword);
+            if(order == null) {
+                try {
+                    order = getRootCategory().findCategoryOrder(keyword);
+                } catch(NullPointerException e) {
+                    log.error("The root category is missing: " + e.getMessage());
+                    return -1;
+                }
+                categoryOrders.put(keyword, order);
+            }
+            return order;
+        }
+    }
+
+    /**
+     * Computes the depth of all keywords at once, in the same order as findKeywordDepth searches them (category name,
+     * then its items, then its subcategories), keeping the first hit.
+     *
+     * @return false if the root category is missing
+     */
+    public boolean buildKeywordDepths() {
+        IItemTreeCategory root = getRootCategory();
+        if(root == null) {
+            log.error("The root category is missing");
+            return false;
+        }
+
+        // Built aside, so that concurrent readers always see a complete table
+        @NotNull Map<String, Integer> newKeywordDepths = new ConcurrentHashMap<>(Math.max(500, keywordDepths.size()));
+        @NotNull Map<IItemTreeCategory, Integer> newCategoryDepths = new ConcurrentHashMap<>();
+        addKeywordDepths(newKeywordDepths, newCategoryDepths, root, 0);
+        keywordDepths = newKeywordDepths;
+        categoryDepths = newCategoryDepths;
+        keywordDepthsDirty = false;
+        return true;
+    }
+
+    private static void addKeywordDepths(@NotNull Map<String, Integer> keywordDepths,
+                                         @NotNull Map<IItemTreeCategory, Integer> categoryDepths,
+                                         @NotNull IItemTreeCategory category, int depth) {
+        categoryDepths.put(category, depth);
+        keywordDepths.putIfAbsent(category.getName(), depth);
+        for(@NotNull List<IItemTreeItem> items : category.getItems()) {
+            for(@NotNull IItemTreeItem item : items) {
+                keywordDepths.putIfAbsent(item.getName(), depth + 1);
             }
         }
+        for(@NotNull IItemTreeCategory subCategory : category.getSubCategories()) {
+            addKeywordDepths(keywordDepths, categoryDepths, subCategory, depth + 1);
+        }
+    }
+
+    /**
+     * Keeps the keyword depths up to date after a new keyword was added to the given category. Only a keyword seen
+     * for the first time (or seen again at the same depth) can be added in place, otherwise the search order matters
+     * and the table is rebuilt on next use.
+     */
+    private void updateKeywordDepth(@NotNull IItemTreeCategory category, String keyword, int depthInCategory) {
+        if(keywordDepthsDirty) {
+            return;
+        }
+        Integer categoryDepth = categoryDepths.get(category);
+        if(categoryDepth == null) {
+            keywordDepthsDirty = true;
+            return;
+        }
+        int depth = categoryDepth + depthInCategory;
+        Integer knownDepth = keywordDepths.putIfAbsent(keyword, depth);
+        if(knownDepth != null && knownDepth != depth) {
+            keywordDepthsDirty = true;
+        }
     }
 
     /**
@@ -163,6 +343,11 @@ public class InvTweaksItemTree implements IItemTree {
     @Override
     public void setRootCategory(@NotNull IItemTreeCategory category) {
         rootCategory = category.getName();
+        keywordDepthsDirty = true;
+        categoryOrders.clear();
+        if(category instanceof InvTweaksItemTreeCategory) {
+            ((InvTweaksItemTreeCategory) category).setOrdinal(categoryCount++, null);
+        }
         categories.put(rootCategory, category);
     }
 
@@ -173,7 +358,7 @@ public class InvTweaksItemTree implements IItemTree {
 
     @Override
     public boolean isItemUnknown(String id, int damage) {
-        return itemsById.get(id) == null;
+        return itemsById.get(id) == null && !dynamicItemsByName.containsKey(id);
     }
 
     @NotNull
@@ -183,42 +368,161 @@ public class InvTweaksItemTree implements IItemTree {
             return new ArrayList<>();
         }
 
-        List<IItemTreeItem> items = itemsById.get(id);
-        @NotNull List<IItemTreeItem> filteredItems = new ArrayList<>();
-        if(items != null) {
-            filteredItems.addAll(items);
+        @Nullable Item item = resolveItem(id);
+        if(item != null) {
+            return getItems(item, damage, extra);
+        }
+        return filterItems(itemsById.get(id), id, damage, extra);
+    }
+
+    /**
+     * Same as getItems(String, int, NBTTagCompound), but looks the item up by reference so that no registry name has
+     * to be built on the hot path.
+     */
+    @NotNull
+    @Override
+    public List<IItemTreeItem> getItems(@Nullable Item item, int damage, @Nullable NBTTagCompound extra) {
+        if(item == null || item.getRegistryName() == null) {
+            return new ArrayList<>();
+        }
+
+        List<IItemTreeItem> items = itemsByItem.get(item);
+        if(items == null) {
+            // Entry that couldn't be resolved when it was added (or no entry at all): fall back to the name once
+            items = itemsById.get(item.getRegistryName().toString());
+            itemsByItem.put(item, (items != null) ? items : Collections.emptyList());
+        }
+
+        // The NBT only matters if some entries of this ID are data-qualified
+        @NotNull CacheKey key = new CacheKey(item, damage, hasExtraData(items) ? extra : null);
+        List<IItemTreeItem> cachedItems = itemsCache.get(key);
+        if(cachedItems != null) {
+            itemsCacheHits.incrementAndGet();
+            return cachedItems;
         }
+        itemsCacheMisses.incrementAndGet();
 
-        // Filter items of same ID, but different damage value
-        if(items != null && !items.isEmpty()) {
-            items.stream().filter(item -> item.getDamage() != InvTweaksConst.DAMAGE_WILDCARD && item.getDamage() != damage).forEach(filteredItems::remove);
+        @NotNull List<IItemTreeItem> filteredItems;
+        if(items == null || items.isEmpty()) {
+            filteredItems = filterItems(null, item.getRegistryName().toString(), damage, extra);
+        } else {
+            filteredItems = filterItems(items, null, damage, extra);
+        }
+
+        // Don't keep the mutable NBT passed by the caller as a key
+        if(key.extra != null) {
+            key = new CacheKey(item, damage, key.extra.copy());
+        }
+        cachedItems = Collections.unmodifiableList(filteredItems);
+        List<IItemTreeItem> concurrentItems = itemsCache.putIfAbsent(key, cachedItems);
+        return (concurrentItems != null) ? concurrentItems : cachedItems;
+    }
+
+    private static boolean matchesExtraData(@NotNull IItemTreeItem item, @NotNull NBTTagCompound extra) {
+        if(item instanceof InvTweaksItemTreeItem) {
+            return ((InvTweaksItemTreeItem) item).matchesExtraData(extra);
+        }
+        return NBTUtil.areNBTEquals(item.getExtraData(), extra, true);
+    }
+
+    private static boolean hasExtraData(@Nullable List<IItemTreeItem> items) {
+        if(items != null) {
+            for(@Nullable IItemTreeItem item : items) {
+                if(item != null && item.getExtraData() != null) {
+                    return true;
+                }
+            }
         }
+        return false;
+    }
+
+    public int getItemsCacheHits() {
+        return itemsCacheHits.get();
+    }
 
-        items = filteredItems;
-        filteredItems = new ArrayList<>(items);
+    public int getItemsCacheMisses() {
+        return itemsCacheMisses.get();
+    }
 
-        // Filter items that don't match extra data
-        if(extra != null && !items.isEmpty()) {
-            items.stream().filter(item -> !NBTUtil.areNBTEquals(item.getExtraData(), extra, true)).forEach(filteredItems::remove);
+    /**
+     * Keeps the items matching the given damage and extra data, in a single pass. If none matches, new items are
+     * created for the given ID (which is only needed in that case).
+     */
+    @NotNull
+    private List<IItemTreeItem> filterItems(@Nullable List<IItemTreeItem> items, @Nullable String id, int damage,
+                                            @Nullable NBTTagCompound extra) {
+        @NotNull List<IItemTreeItem> filteredItems = new ArrayList<>();
+        if(items != null) {
+            for(@Nullable IItemTreeItem item : items) {
+                if(item instanceof InvTweaksItemTreeRangeItem) {
+                    if(((InvTweaksItemTreeRangeItem) item).containsDamage(damage)) {
+                        filteredItems.add(((InvTweaksItemTreeRangeItem) item).getItem(damage));
+                    }
+                }
+                // Filter items of same ID, but different damage value, and items that don't match extra data
+                else if(item != null
+                        && (item.getDamage() == InvTweaksConst.DAMAGE_WILDCARD || item.getDamage() == damage)
+                        && (extra == null || matchesExtraData(item, extra))) {
+                    filteredItems.add(item);
+                }
+            }
         }
 
-        // If there's no matching item, create new ones
+        // If there's no matching item, use made up ones
         if(filteredItems.isEmpty()) {
+            if(id == null) {
+                id = items.get(0).getId();
+            }
+            filteredItems.addAll(getDynamicItems(id, damage));
+        }
+
+        return filteredItems;
+    }
+
+    /**
+     * @return The made up items of an item missing from the tree: one for its exact damage value, one for any damage
+     * value. They are all sorted right after the tree items, then by registry name.
+     */
+    @NotNull
+    private List<IItemTreeItem> getDynamicItems(@NotNull String id, int damage) {
+        @NotNull String name = id + "-" + damage;
+        List<IItemTreeItem> items = dynamicItems.get(name);
+        if(items == null) {
             int newItemOrder = highestOrder + 1;
-            @NotNull IItemTreeItem newItemId = new InvTweaksItemTreeItem(String.format("%s-%d", id, damage), id, damage, null,
-                    newItemOrder);
-            @NotNull IItemTreeItem newItemDamage = new InvTweaksItemTreeItem(id, id,
+            @NotNull InvTweaksItemTreeItem newItemId = new InvTweaksItemTreeItem(name, id, damage, null, newItemOrder);
+            @NotNull InvTweaksItemTreeItem newItemDamage = new InvTweaksItemTreeItem(id, id,
                     InvTweaksConst.DAMAGE_WILDCARD, null, newItemOrder);
-            addItem(getRootCategory().getName(), newItemId);
-            addItem(getRootCategory().getName(), newItemDamage);
-            filteredItems.add(newItemId);
-            filteredItems.add(newItemDamage);
+            IItemTreeCategory root = getRootCategory();
+            if(root instanceof InvTweaksItemTreeCategory && ((InvTweaksItemTreeCategory) root).getPath() != null) {
+                newItemId.addCategories(((InvTweaksItemTreeCategory) root).getPath());
+                newItemDamage.addCategories(((InvTweaksItemTreeCategory) root).getPath());
+            }
+
+            items = Arrays.asList(newItemId, newItemDamage);
+            List<IItemTreeItem> concurrentItems = dynamicItems.putIfAbsent(name, items);
+            if(concurrentItems != null) {
+                return concurrentItems;
+            }
+            dynamicItemsByName.put(newItemId.getName(), newItemId);
+            dynamicItemsByName.put(newItemDamage.getName(), newItemDamage);
+            dynamicItemsInsertions.incrementAndGet();
         }
+        return items;
+    }
 
-        filteredItems.removeIf(Objects::isNull);
+    /**
+     * @return Number of items currently made up for stacks missing from the tree (by id and damage)
+     */
+    public int getDynamicItemsSize() {
+        return dynamicItems.size();
+    }
 
-        return filteredItems;
+    public int getDynamicItemsInsertions() {
+        return dynamicItemsInsertions.get();
+    }
 
+    public int getDynamicItemsEvictions() {
+        return dynamicItems.getEvictions();
     }
 
     @NotNull
@@ -229,7 +533,19 @@ public class InvTweaksItemTree implements IItemTree {
 
     @Override
     public List<IItemTreeItem> getItems(String name) {
-        return itemsByName.get(name);
+        List<IItemTreeItem> items = itemsByName.get(name);
+        if(items == null) {
+            @Nullable InvTweaksItemTreeRangeItem range = findRange(name);
+            if(range != null) {
+                return Collections.singletonList(range.getItem(getRangeDamage(name)));
+            }
+
+            IItemTreeItem dynamicItem = dynamicItemsByName.get(name);
+            if(dynamicItem != null) {
+                return Collections.singletonList(dynamicItem);
+            }
+        }
+        return items;
     }
 
     @NotNull
@@ -240,7 +556,49 @@ public class InvTweaksItemTree implements IItemTree {
 
     @Override
     public boolean containsItem(String name) {
-        return itemsByName.containsKey(name);
+        return itemsByName.containsKey(name) || dynamicItemsByName.containsKey(name) || findRange(name) != null;
+    }
+
+    /**
+     * @return The damage range holding the item of the given name, if it is named like range items are
+     */
+    @Nullable
+    private InvTweaksItemTreeRangeItem findRange(@Nullable String name) {
+        if(name == null || rangesByPrefix.isEmpty()) {
+            return null;
+        }
+        int damage = getRangeDamage(name);
+        if(damage < 0) {
+            return null;
+        }
+        List<InvTweaksItemTreeRangeItem> ranges = rangesByPrefix.get(name.substring(0, name.lastIndexOf('-') + 1));
+        if(ranges != null) {
+            for(@NotNull InvTweaksItemTreeRangeItem range : ranges) {
+                if(range.containsDamage(damage)) {
+                    return range;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The damage value at the end of the given name, or -1
+     */
+    private static int getRangeDamage(@NotNull String name) {
+        int separator = name.lastIndexOf('-');
+        if(separator == -1 || separator == name.length() - 1 || name.length() - separator > 10) {
+            return -1;
+        }
+        int damage = 0;
+        for(int i = separator + 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if(c < '0' || c > '9') {
+                return -1;
+            }
+            damage = damage * 10 + (c - '0');
+        }
+        return damage;
     }
 
     @Override
@@ -274,34 +632,115 @@ public class InvTweaksItemTree implements IItemTree {
 
     @Override
     public void addCategory(String parentCategory, @NotNull IItemTreeCategory newCategory) throws NullPointerException {
+        IItemTreeCategory parent = categories.get(parentCategory);
+        if(parent instanceof InvTweaksItemTreeCategory && newCategory instanceof InvTweaksItemTreeCategory) {
+            @Nullable BitSet parentPath = ((InvTweaksItemTreeCategory) parent).getPath();
+            if(parentPath != null) {
+                ((InvTweaksItemTreeCategory) newCategory).setOrdinal(categoryCount++, parentPath);
+            }
+        }
+
         // Build tree
-        categories.get(parentCategory).addCategory(newCategory);
+        parent.addCategory(newCategory);
 
         // Register category
         categories.put(newCategory.getName(), newCategory);
+
+        if(!keywordDepthsDirty) {
+            Integer parentDepth = categoryDepths.get(parent);
+            if(parentDepth != null && newCategory.getItems().isEmpty() && newCategory.getSubCategories().isEmpty()) {
+                categoryDepths.put(newCategory, parentDepth + 1);
+                updateKeywordDepth(parent, newCategory.getName(), 1);
+            } else {
+                keywordDepthsDirty = true;
+            }
+        }
+        categoryOrders.remove(newCategory.getName());
     }
 
     @Override
     public void addItem(String parentCategory, @NotNull IItemTreeItem newItem) throws NullPointerException {
         highestOrder = Math.max(highestOrder, newItem.getOrder());
+        if(newItem instanceof InvTweaksItemTreeRangeItem) {
+            @NotNull InvTweaksItemTreeRangeItem range = (InvTweaksItemTreeRangeItem) newItem;
+            highestOrder = Math.max(highestOrder, range.getOrder() + range.getSize() - 1);
+            range.setCategory(categories.get(parentCategory));
+            rangesByPrefix.computeIfAbsent(range.getNamePrefix(), k -> new CopyOnWriteArrayList<>()).add(range);
+        }
+        if(batchDepth > 0) {
+            batchChanged = true;
+        } else {
+            invalidateCachedItems(newItem.getId());
+        }
 
         // Build tree
-        categories.get(parentCategory).addItem(newItem);
+        IItemTreeCategory category = categories.get(parentCategory);
+        if(category instanceof InvTweaksItemTreeCategory && newItem instanceof InvTweaksItemTreeItem) {
+            @Nullable BitSet path = ((InvTweaksItemTreeCategory) category).getPath();
+            if(path != null) {
+                ((InvTweaksItemTreeItem) newItem).addCategories(path);
+            }
+        }
+        if(batchDepth > 0) {
+            category.addItem(newItem);
+        } else {
+            int categoryOrder = category.getCategoryOrder();
+            category.addItem(newItem);
+            updateKeywordDepth(category, newItem.getName(), 1);
+            if(category.getCategoryOrder() != categoryOrder) {
+                categoryOrders.clear();
+            }
+        }
 
         // Register item
         if(itemsByName.containsKey(newItem.getName())) {
             itemsByName.get(newItem.getName()).add(newItem);
         } else {
-            @NotNull List<IItemTreeItem> list = new ArrayList<>();
+            @NotNull List<IItemTreeItem> list = new CopyOnWriteArrayList<>();
             list.add(newItem);
             itemsByName.put(newItem.getName(), list);
         }
         if(itemsById.containsKey(newItem.getId())) {
             itemsById.get(newItem.getId()).add(newItem);
         } else {
-            @NotNull List<IItemTreeItem> list = new ArrayList<>();
+            @NotNull List<IItemTreeItem> list = new CopyOnWriteArrayList<>();
             list.add(newItem);
             itemsById.put(newItem.getId(), list);
+
+            @Nullable Item item = resolveItem(newItem.getId());
+            if(item != null) {
+                itemsByItem.put(item, list);
+            }
+        }
+    }
+
+    /**
+     * Drops the cached getItems() results of the given ID, since its item list is about to change.
+     */
+    private void invalidateCachedItems(@Nullable String id) {
+        if(itemsCache.isEmpty()) {
+            return;
+        }
+        @Nullable Item item = resolveItem(id);
+        if(item != null) {
+            itemsCache.removeIf(key -> key.item == item);
+        } else {
+            itemsCache.clear();
+        }
+    }
+
+    /**
+     * @return The registered Item for the given namespaced ID, or null if it doesn't exist (yet)
+     */
+    @Nullable
+    private static Item resolveItem(@Nullable String id) {
+        if(id == null) {
+            return null;
+        }
+        try {
+            return Item.REGISTRY.getObject(new ResourceLocation(id));
+        } catch(RuntimeException e) {
+            return null;
         }
     }
 
@@ -309,33 +748,218 @@ public class InvTweaksItemTree implements IItemTree {
         return highestOrder;
     }
 
+    /**
+     * Starts adding several items at once. Must be followed by a call to endBatch().
+     */
+    public void beginBatch() {
+        batchDepth++;
+    }
+
+    public void endBatch() {
+        if(--batchDepth == 0 && batchChanged) {
+            batchChanged = false;
+            itemsCache.clear();
+            keywordDepthsDirty = true;
+            categoryOrders.clear();
+        }
+    }
+
     @Override
     public void registerOre(String category, String name, String oreName, int order) {
-        for(@Nullable ItemStack i : OreDictionary.getOres(oreName)) {
-            if(i != null) {
-                // TODO: It looks like Mojang changed the internal name type to ResourceLocation. Evaluate how much of a pain that will be.
-                addItem(category,
-                        new InvTweaksItemTreeItem(name, i.getItem().getRegistryName().toString(), i.getItemDamage(), null, order));
-            } else {
-                log.warn(String.format("An OreDictionary entry for %s is null", oreName));
+        long startTime = System.nanoTime();
+        beginBatch();
+        try {
+            for(@Nullable ItemStack i : OreDictionary.getOres(oreName)) {
+                if(i != null) {
+                    // TODO: It looks like Mojang changed the internal name type to ResourceLocation. Evaluate how much of a pain that will be.
+                    addItem(category,
+                            new InvTweaksItemTreeItem(name, i.getItem().getRegistryName().toString(), i.getItemDamage(), null, order));
+                } else {
+                    log.warn(String.format("An OreDictionary entry for %s is null", oreName));
+                }
             }
+        } finally {
+            endBatch();
         }
-        oresRegistered.add(new OreDictInfo(category, name, oreName, order));
+        oresRegistered.computeIfAbsent(oreName, k -> new CopyOnWriteArrayList<>())
+                .add(new OreDictInfo(category, name, oreName, order));
+        oreHandlingTime.addAndGet(System.nanoTime() - startTime);
     }
 
     @SubscribeEvent
     public void oreRegistered(@NotNull OreDictionary.OreRegisterEvent ev) {
-        // TODO: It looks like Mojang changed the internal name type to ResourceLocation. Evaluate how much of a pain that will be.
-        oresRegistered.stream().filter(ore -> ore.oreName.equals(ev.getName())).forEach(ore -> {
+        long startTime = System.nanoTime();
+        oreEventCount.incrementAndGet();
+        List<OreDictInfo> ores = oresRegistered.get(ev.getName());
+        if(ores != null) {
             @NotNull ItemStack evOre = ev.getOre();
             if(!evOre.isEmpty()) {
-                // TODO: It looks like Mojang changed the internal name type to ResourceLocation. Evaluate how much of a pain that will be.
-                addItem(ore.category, new InvTweaksItemTreeItem(ore.name, evOre.getItem().getRegistryName().toString(),
-                        evOre.getItemDamage(), null, ore.order));
+                beginBatch();
+                try {
+                    for(@NotNull OreDictInfo ore : ores) {
+                        // TODO: It looks like Mojang changed the internal name type to ResourceLocation. Evaluate how much of a pain that will be.
+                        addItem(ore.category, new InvTweaksItemTreeItem(ore.name, evOre.getItem().getRegistryName().toString(),
+                                evOre.getItemDamage(), null, ore.order));
+                    }
+                } finally {
+                    endBatch();
+                }
             } else {
                 log.warn(String.format("An OreDictionary entry for %s is null", ev.getName()));
             }
-        });
+        }
+        oreHandlingTime.addAndGet(System.nanoTime() - startTime);
+    }
+
+    /**
+     * @return Time spent in ore dictionary handling so far (all trees), in nanoseconds
+     */
+    public static long getOreHandlingTime() {
+        return oreHandlingTime.get();
+    }
+
+    /**
+     * @return Number of ore registration events received so far (all trees)
+     */
+    public static int getOreEventCount() {
+        return oreEventCount.get();
+    }
+
+    /**
+     * Bounded map forgetting its least recently used entries, without locking. Eviction is done by batches (an eighth
+     * of the entries at a time), by whichever thread goes over the limit first.
+     */
+    private static class ConcurrentLruMap<K, V> {
+        @NotNull
+        private final ConcurrentHashMap<K, Entry<V>> map = new ConcurrentHashMap<>();
+        private final int maxSize;
+        @Nullable
+        private final BiConsumer<K, V> onEviction;
+        @NotNull
+        private final AtomicLong clock = new AtomicLong();
+        @NotNull
+        private final AtomicBoolean evicting = new AtomicBoolean();
+        @NotNull
+        private final AtomicInteger evictions = new AtomicInteger();
+
+        ConcurrentLruMap(int maxSize_, @Nullable BiConsumer<K, V> onEviction_) {
+            maxSize = maxSize_;
+            onEviction = onEviction_;
+        }
+
+        @Nullable
+        V get(@NotNull K key) {
+            Entry<V> entry = map.get(key);
+            if(entry == null) {
+                return null;
+            }
+            entry.lastAccess = clock.incrementAndGet();
+            return entry.value;
+        }
+
+        /**
+         * @return The value already stored for this key (which is kept), or null if the given one was stored
+         */
+        @Nullable
+        V putIfAbsent(@NotNull K key, @NotNull V value) {
+            Entry<V> entry = map.putIfAbsent(key, new Entry<>(value, clock.incrementAndGet()));
+            if(entry != null) {
+                return entry.value;
+            }
+            if(map.size() > maxSize) {
+                evict();
+            }
+            return null;
+        }
+
+        void removeIf(@NotNull Predicate<K> predicate) {
+            map.keySet().removeIf(predicate);
+        }
+
+        void clear() {
+            map.clear();
+        }
+
+        boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        int size() {
+            return map.size();
+        }
+
+        int getEvictions() {
+            return evictions.get();
+        }
+
+        private void evict() {
+            if(!evicting.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                // Snapshot access times, since they keep changing while sorting
+                @NotNull List<Object[]> entries = new ArrayList<>(map.size());
+                for(@NotNull Map.Entry<K, Entry<V>> entry : map.entrySet()) {
+                    entries.add(new Object[]{entry.getKey(), entry.getValue(), entry.getValue().lastAccess});
+                }
+                entries.sort(Comparator.comparingLong(entry -> (Long) entry[2]));
+
+                int toRemove = entries.size() - maxSize + maxSize / 8;
+                for(int i = 0; i < toRemove && i < entries.size(); i++) {
+                    @SuppressWarnings("unchecked") K key = (K) entries.get(i)[0];
+                    @SuppressWarnings("unchecked") Entry<V> entry = (Entry<V>) entries.get(i)[1];
+                    if(map.remove(key, entry)) {
+                        evictions.incrementAndGet();
+                        if(onEviction != null) {
+                            onEviction.accept(key, entry.value);
+                        }
+                    }
+                }
+            } finally {
+                evicting.set(false);
+            }
+        }
+
+        private static class Entry<V> {
+            @NotNull
+            final V value;
+            volatile long lastAccess;
+
+            Entry(@NotNull V value_, long lastAccess_) {
+                value = value_;
+                lastAccess = lastAccess_;
+            }
+        }
+    }
+
+    private static class CacheKey {
+        @NotNull
+        final Item item;
+        final int damage;
+        @Nullable
+        final NBTTagCompound extra;
+        private final int hash;
+
+        CacheKey(@NotNull Item item_, int damage_, @Nullable NBTTagCompound extra_) {
+            item = item_;
+            damage = damage_;
+            extra = extra_;
+            hash = 31 * (31 * System.identityHashCode(item) + damage) + ((extra != null) ? extra.hashCode() : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof CacheKey)) {
+                return false;
+            }
+            @NotNull CacheKey key = (CacheKey) o;
+            return item == key.item && damage == key.damage && hash == key.hash && Objects.equals(extra, key.extra);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
     }
 
     private static class OreDictInfo {
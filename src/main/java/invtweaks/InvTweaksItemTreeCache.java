@@ -0,0 +1,213 @@
+package invtweaks;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Compiled form of the item tree file, to skip XML parsing when the tree file didn't change.
+ * <p>
+ * The cache stores the operations the loader performed on the tree, in order, along with the hash of the tree file
+ * they were read from. Item IDs are stored as names and ore dictionary entries are registered again when replaying, so
+ * the cache doesn't depend on the item registry or the ore dictionary contents.
+ */
+public class InvTweaksItemTreeCache {
+
+    private static final Logger log = InvTweaks.log;
+
+    private static final int MAGIC = 0x49545443; // "ITTC"
+    private static final int FORMAT_VERSION = 2;
+
+    private static final byte OP_END = 0;
+    private static final byte OP_ROOT_CATEGORY = 1;
+    private static final byte OP_CATEGORY = 2;
+    private static final byte OP_ITEM = 3;
+    private static final byte OP_ORE = 4;
+    private static final byte OP_RANGE = 5;
+
+    @NotNull
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(32768);
+    @NotNull
+    private final DataOutputStream out = new DataOutputStream(buffer);
+
+    /**
+     * @return The SHA-1 of the given file
+     */
+    @NotNull
+    public static byte[] computeHash(@NotNull File file) throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(Files.readAllBytes(file.toPath()));
+        } catch(NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @return The tree version stored in the cache file if it was compiled from a file with the given hash, else null
+     */
+    @Nullable
+    public static String readTreeVersion(@NotNull File cacheFile, @NotNull byte[] treeHash) {
+        if(!cacheFile.exists()) {
+            return null;
+        }
+        try(@NotNull DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            return readHeader(in, treeHash);
+        } catch(IOException e) {
+            log.warn("Failed to read item tree cache: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Replays the cache file onto the given (empty) tree.
+     *
+     * @return The tree version, or null if the cache is missing, invalid or compiled from another tree file. The tree
+     * must be discarded in that case.
+     */
+    @Nullable
+    public static String load(@NotNull File cacheFile, @NotNull byte[] treeHash, @NotNull InvTweaksItemTree tree) {
+        if(!cacheFile.exists()) {
+            return null;
+        }
+        try(@NotNull DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(Files.readAllBytes(cacheFile.toPath())))) {
+            @Nullable String treeVersion = readHeader(in, treeHash);
+            if(treeVersion == null) {
+                return null;
+            }
+
+            byte op;
+            while((op = in.readByte()) != OP_END) {
+                switch(op) {
+                    case OP_ROOT_CATEGORY:
+                        tree.setRootCategory(new InvTweaksItemTreeCategory(in.readUTF()));
+                        break;
+                    case OP_CATEGORY: {
+                        String parent = in.readUTF();
+                        tree.addCategory(parent, new InvTweaksItemTreeCategory(in.readUTF()));
+                        break;
+                    }
+                    case OP_ITEM: {
+                        String category = in.readUTF();
+                        String name = in.readUTF();
+                        String id = in.readUTF();
+                        int damage = in.readInt();
+                        @Nullable NBTTagCompound extraData = in.readBoolean() ? CompressedStreamTools.read(in) : null;
+                        tree.addItem(category, new InvTweaksItemTreeItem(name, id, damage, extraData, in.readInt()));
+                        break;
+                    }
+                    case OP_RANGE: {
+                        String category = in.readUTF();
+                        String id = in.readUTF();
+                        int minDamage = in.readInt();
+                        int maxDamage = in.readInt();
+                        tree.addItem(category, new InvTweaksItemTreeRangeItem(category, id, minDamage, maxDamage,
+                                in.readInt()));
+                        break;
+                    }
+                    case OP_ORE: {
+                        String category = in.readUTF();
+                        String name = in.readUTF();
+                        String oreName = in.readUTF();
+                        tree.registerOre(category, name, oreName, in.readInt());
+                        break;
+                    }
+                    default:
+                        throw new IOException("Unknown operation " + op);
+                }
+            }
+            return treeVersion;
+        } catch(IOException | RuntimeException e) {
+            log.warn("Failed to load item tree cache: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Nullable
+    private static String readHeader(@NotNull DataInputStream in, @NotNull byte[] treeHash) throws IOException {
+        if(in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+        @NotNull byte[] storedHash = new byte[in.readUnsignedByte()];
+        in.readFully(storedHash);
+        if(!Arrays.equals(storedHash, treeHash)) {
+            return null;
+        }
+        return in.readBoolean() ? in.readUTF() : "";
+    }
+
+    public void setRootCategory(String name) throws IOException {
+        out.writeByte(OP_ROOT_CATEGORY);
+        out.writeUTF(name);
+    }
+
+    public void addCategory(String parentCategory, String name) throws IOException {
+        out.writeByte(OP_CATEGORY);
+        out.writeUTF(parentCategory);
+        out.writeUTF(name);
+    }
+
+    public void addItem(String category, String name, String id, int damage, @Nullable NBTTagCompound extraData,
+                        int order) throws IOException {
+        out.writeByte(OP_ITEM);
+        out.writeUTF(category);
+        out.writeUTF(name);
+        out.writeUTF(id);
+        out.writeInt(damage);
+        out.writeBoolean(extraData != null);
+        if(extraData != null) {
+            CompressedStreamTools.write(extraData, out);
+        }
+        out.writeInt(order);
+    }
+
+    public void addRange(String category, String id, int minDamage, int maxDamage, int order) throws IOException {
+        out.writeByte(OP_RANGE);
+        out.writeUTF(category);
+        out.writeUTF(id);
+        out.writeInt(minDamage);
+        out.writeInt(maxDamage);
+        out.writeInt(order);
+    }
+
+    public void registerOre(String category, String name, String oreName, int order) throws IOException {
+        out.writeByte(OP_ORE);
+        out.writeUTF(category);
+        out.writeUTF(name);
+        out.writeUTF(oreName);
+        out.writeInt(order);
+    }
+
+    /**
+     * Writes the recorded operations to the cache file. Written to a temporary file first, so that an interrupted
+     * write can't leave a truncated cache behind.
+     */
+    public void save(@NotNull File cacheFile, @NotNull byte[] treeHash, @Nullable String treeVersion) throws IOException {
+        out.writeByte(OP_END);
+        out.flush();
+
+        @NotNull File tmpFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+        try(@NotNull DataOutputStream fileOut = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            fileOut.writeInt(MAGIC);
+            fileOut.writeInt(FORMAT_VERSION);
+            fileOut.writeByte(treeHash.length);
+            fileOut.write(treeHash);
+            fileOut.writeBoolean(treeVersion != null);
+            if(treeVersion != null) {
+                fileOut.writeUTF(treeVersion);
+            }
+            buffer.writeTo(fileOut);
+        }
+        Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -4,8 +4,11 @@ package invtweaks;
 import invtweaks.api.IItemTreeCategory;
 import invtweaks.api.IItemTreeItem;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Representation of a category in the item tree, i.e. a group of items.
@@ -13,11 +16,26 @@ import java.util.*;
  * @author Jimeo Wan
  */
 public class InvTweaksItemTreeCategory implements IItemTreeCategory {
-    private final Map<String, List<IItemTreeItem>> items = new HashMap<>();
-    private final List<String> matchingItems = new ArrayList<>();
-    private final List<IItemTreeCategory> subCategories = new ArrayList<>();
+    private final Map<String, List<IItemTreeItem>> items = new ConcurrentHashMap<>();
+    private final Set<String> matchingItems = ConcurrentHashMap.newKeySet();
+    private final List<IItemTreeCategory> subCategories = new CopyOnWriteArrayList<>();
     private String name;
-    private int order = -1;
+    private volatile int order = -1;
+    /**
+     * Dense ordinal given by the tree, or -1. Its bit is set in the categories of every item below this category.
+     */
+    private int ordinal = -1;
+    /**
+     * Ordinals of this category and all its ancestors
+     */
+    @Nullable
+    private BitSet path = null;
+    /**
+     * Whether the category bits of every item below this category are known to be up to date
+     */
+    private volatile boolean indexed = false;
+    @Nullable
+    private InvTweaksItemTreeCategory parent = null;
 
     public InvTweaksItemTreeCategory(String name_) {
         name = name_;
@@ -25,7 +43,7 @@ public class InvTweaksItemTreeCategory implements IItemTreeCategory {
 
     @Override
     public boolean contains(@NotNull IItemTreeItem item) {
-        List<IItemTreeItem> storedItems = items.get(item.getId());
+        List<IItemTreeItem> storedItems = (item.getId() != null) ? items.get(item.getId()) : null;
         if(storedItems != null) {
             for(@NotNull IItemTreeItem storedItem : storedItems) {
                 if(storedItem.equals(item)) {
@@ -44,6 +62,16 @@ public class InvTweaksItemTreeCategory implements IItemTreeCategory {
     @Override
     public void addCategory(IItemTreeCategory category) {
         subCategories.add(category);
+
+        if(category instanceof InvTweaksItemTreeCategory) {
+            @NotNull InvTweaksItemTreeCategory subCategory = (InvTweaksItemTreeCategory) category;
+            subCategory.parent = this;
+            if(!subCategory.indexed || subCategory.path == null || ordinal == -1 || !subCategory.path.get(ordinal)) {
+                invalidateIndex();
+            }
+        } else {
+            invalidateIndex();
+        }
     }
 
     @Override
@@ -51,7 +79,7 @@ public class InvTweaksItemTreeCategory implements IItemTreeCategory {
 
         // Add item to category
         if(items.get(item.getId()) == null) {
-            @NotNull List<IItemTreeItem> itemList = new ArrayList<>();
+            @NotNull List<IItemTreeItem> itemList = new CopyOnWriteArrayList<>();
             itemList.add(item);
             items.put(item.getId(), itemList);
         } else {
@@ -59,6 +87,11 @@ public class InvTweaksItemTreeCategory implements IItemTreeCategory {
         }
         matchingItems.add(item.getName());
 
+        if(ordinal == -1 || !(item instanceof InvTweaksItemTreeItem)
+                || !((InvTweaksItemTreeItem) item).isInCategory(ordinal)) {
+            invalidateIndex();
+        }
+
         // Categorie's order is defined by its lowest item order
         if(order == -1 || order > item.getOrder()) {
             order = item.getOrder();
@@ -115,6 +148,47 @@ public class InvTweaksItemTreeCategory implements IItemTreeCategory {
         }
     }
 
+    /**
+     * Gives this category its ordinal. Only done for empty categories, since the items already in it wouldn't carry
+     * the corresponding bit.
+     *
+     * @param ordinal_    The dense ordinal of the category
+     * @param parentPath_ The path of the parent category, or null for the root category
+     */
+    void setOrdinal(int ordinal_, @Nullable BitSet parentPath_) {
+        ordinal = ordinal_;
+        path = (parentPath_ != null) ? (BitSet) parentPath_.clone() : new BitSet();
+        path.set(ordinal);
+        indexed = items.isEmpty() && subCategories.isEmpty();
+    }
+
+    int getOrdinal() {
+        return ordinal;
+    }
+
+    @Nullable
+    BitSet getPath() {
+        return path;
+    }
+
+    /**
+     * @return true if membership in this category can be checked with the items category bits only
+     */
+    boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * Called when an item or category was added without going through the tree. Membership must then be checked
+     * the slow way for this category and all its ancestors.
+     */
+    private void invalidateIndex() {
+        for(@Nullable InvTweaksItemTreeCategory category = this; category != null && category.indexed;
+            category = category.parent) {
+            category.indexed = false;
+        }
+    }
+
     /**
      * @return all categories contained in this one.
      */
@@ -1,11 +1,13 @@
 package invtweaks;
 
 import invtweaks.api.IItemTreeItem;
-import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.nbt.NBTUtil;
+import net.minecraft.nbt.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -21,6 +23,16 @@ public class InvTweaksItemTreeItem implements IItemTreeItem {
     private int damage;
     private NBTTagCompound extraData;
     private int order;
+    /**
+     * Ordinals of all the categories containing this item, directly or not
+     */
+    @NotNull
+    private final BitSet categories = new BitSet();
+    /**
+     * Tags that any matching NBT must have, to reject most stacks before the full partial compare
+     */
+    @Nullable
+    private final NBTRequirement[] extraDataRequirements;
 
     /**
      * @param name_   The item name
@@ -34,6 +46,52 @@ public class InvTweaksItemTreeItem implements IItemTreeItem {
         damage = damage_;
         extraData = extraData_;
         order = order_;
+        extraDataRequirements = (extraData != null) ? computeRequirements(extraData) : null;
+    }
+
+    /**
+     * Lists the tags reachable through compounds only (lists are matched loosely, so they aren't looked into). Each
+     * must exist with the same type in a matching NBT, and primitive or string ones must also have the same hash.
+     */
+    @NotNull
+    private static NBTRequirement[] computeRequirements(@NotNull NBTTagCompound compound) {
+        @NotNull List<NBTRequirement> requirements = new ArrayList<>();
+        addRequirements(requirements, new String[0], compound);
+        return requirements.toArray(new NBTRequirement[0]);
+    }
+
+    private static void addRequirements(@NotNull List<NBTRequirement> requirements, @NotNull String[] parentPath,
+                                        @NotNull NBTTagCompound compound) {
+        for(String key : compound.getKeySet()) {
+            NBTBase tag = compound.getTag(key);
+            @NotNull String[] path = new String[parentPath.length + 1];
+            System.arraycopy(parentPath, 0, path, 0, parentPath.length);
+            path[parentPath.length] = key;
+
+            boolean leaf = tag instanceof NBTPrimitive || tag instanceof NBTTagString;
+            requirements.add(new NBTRequirement(path, tag.getId(), leaf, leaf ? tag.hashCode() : 0));
+            if(tag instanceof NBTTagCompound) {
+                addRequirements(requirements, path, (NBTTagCompound) tag);
+            }
+        }
+    }
+
+    /**
+     * Same as NBTUtil.areNBTEquals(extraData, extra, true), rejecting most mismatches without walking both NBTs.
+     */
+    public boolean matchesExtraData(@Nullable NBTTagCompound extra) {
+        if(extraData == null || extraData == extra) {
+            return true;
+        }
+        if(extra == null) {
+            return false;
+        }
+        for(@NotNull NBTRequirement requirement : extraDataRequirements) {
+            if(!requirement.isMetBy(extra)) {
+                return false;
+            }
+        }
+        return NBTUtil.areNBTEquals(extraData, extra, true);
     }
 
     @Override
@@ -62,6 +120,19 @@ public class InvTweaksItemTreeItem implements IItemTreeItem {
         return order;
     }
 
+    void addCategories(@NotNull BitSet path) {
+        categories.or(path);
+    }
+
+    @NotNull
+    BitSet getCategories() {
+        return categories;
+    }
+
+    boolean isInCategory(int ordinal) {
+        return categories.get(ordinal);
+    }
+
     /**
      * Warning: the item equality is not reflective. They are equal if "o" matches the item constraints (the opposite
      * can be false).
@@ -72,7 +143,7 @@ public class InvTweaksItemTreeItem implements IItemTreeItem {
         }
         @Nullable IItemTreeItem item = (IItemTreeItem) o;
         return Objects.equals(id, item.getId())
-                && NBTUtil.areNBTEquals(extraData, item.getExtraData(), true)
+                && matchesExtraData(item.getExtraData())
                 && (damage == InvTweaksConst.DAMAGE_WILDCARD || damage == item.getDamage());
     }
 
@@ -85,4 +156,29 @@ public class InvTweaksItemTreeItem implements IItemTreeItem {
         return item.getOrder() - order;
     }
 
+    private static class NBTRequirement {
+        @NotNull
+        final String[] path;
+        final byte type;
+        final boolean leaf;
+        final int hash;
+
+        NBTRequirement(@NotNull String[] path_, byte type_, boolean leaf_, int hash_) {
+            path = path_;
+            type = type_;
+            leaf = leaf_;
+            hash = hash_;
+        }
+
+        boolean isMetBy(@NotNull NBTTagCompound compound) {
+            @Nullable NBTBase tag = compound;
+            for(String key : path) {
+                if(!(tag instanceof NBTTagCompound)) {
+                    return false;
+                }
+                tag = ((NBTTagCompound) tag).getTag(key);
+            }
+            return tag != null && tag.getId() == type && (!leaf || tag.hashCode() == hash);
+        }
+    }
 }
@@ -15,9 +15,10 @@ import org.xml.sax.helpers.DefaultHandler;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import java.io.File;
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Loads the item tree by parsing the XML file.
@@ -33,46 +34,84 @@ public class InvTweaksItemTreeLoader extends DefaultHandler {
     private final static String ATTR_OREDICT_NAME = "oreDictName"; // OreDictionary names
     private final static String ATTR_DATA = "data";
     private final static String ATTR_TREE_VERSION = "treeVersion";
-    private static final List<IItemTreeListener> onLoadListeners = new ArrayList<>();
-    private static InvTweaksItemTree tree;
+    private static final List<IItemTreeListener> onLoadListeners = new CopyOnWriteArrayList<>();
+    /**
+     * Last published tree, for listeners registered late
+     */
     @Nullable
-    private static String treeVersion;
-    private static int itemOrder;
-    private static LinkedList<String> categoryStack;
-    private static boolean treeLoaded = false;
-
-    private static void init() {
-        treeVersion = null;
-        tree = new InvTweaksItemTree();
-        itemOrder = 0;
-        categoryStack = new LinkedList<>();
-    }
+    private static volatile InvTweaksItemTree publishedTree = null;
 
-    public synchronized static InvTweaksItemTree load(@NotNull File file) throws Exception {
-        init();
+    @NotNull
+    private final InvTweaksItemTree tree = new InvTweaksItemTree();
+    @Nullable
+    private String treeVersion = null;
+    private int itemOrder = 0;
+    @NotNull
+    private final LinkedList<String> categoryStack = new LinkedList<>();
+    /**
+     * Records what is parsed, to be saved as the compiled tree cache
+     */
+    @NotNull
+    private final InvTweaksItemTreeCache cache = new InvTweaksItemTreeCache();
 
-        SAXParserFactory parserFactory = SAXParserFactory.newInstance();
-        SAXParser parser = parserFactory.newSAXParser();
-        parser.parse(file, new InvTweaksItemTreeLoader());
+    /**
+     * Builds a new tree from the given file. The tree isn't shared with anything until it is published, so this can be
+     * run on any thread.
+     */
+    @NotNull
+    public static InvTweaksItemTree load(@NotNull File file) throws Exception {
+        // Use the compiled tree if it's up to date, else parse the XML and compile it
+        @NotNull byte[] treeHash = InvTweaksItemTreeCache.computeHash(file);
+        @NotNull InvTweaksItemTree tree = new InvTweaksItemTree();
+        tree.beginBatch();
+        @Nullable String cachedTreeVersion = InvTweaksItemTreeCache.load(InvTweaksConst.CONFIG_TREE_CACHE_FILE,
+                treeHash, tree);
+        tree.endBatch();
+        if(cachedTreeVersion == null) {
+            @NotNull InvTweaksItemTreeLoader loader = new InvTweaksItemTreeLoader();
+            tree = loader.tree;
+            SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+            SAXParser parser = parserFactory.newSAXParser();
+            tree.beginBatch();
+            try {
+                parser.parse(file, loader);
+            } finally {
+                tree.endBatch();
+            }
 
-        // Tree loaded event
-        synchronized(onLoadListeners) {
-            treeLoaded = true;
-            for(@NotNull IItemTreeListener onLoadListener : onLoadListeners) {
-                onLoadListener.onTreeLoaded(tree);
+            try {
+                loader.cache.save(InvTweaksConst.CONFIG_TREE_CACHE_FILE, treeHash, loader.treeVersion);
+            } catch(IOException e) {
+                InvTweaks.log.warn("Failed to save item tree cache: " + e.getMessage());
             }
         }
+        tree.buildKeywordDepths();
 
         MinecraftForge.EVENT_BUS.register(tree);
 
         return tree;
     }
 
-    public synchronized static boolean isValidVersion(@NotNull File file) throws Exception {
-        init();
+    /**
+     * Makes the given tree the current one, and notifies the listeners.
+     */
+    public static void publish(@NotNull InvTweaksItemTree tree) {
+        synchronized(onLoadListeners) {
+            publishedTree = tree;
+            for(@NotNull IItemTreeListener onLoadListener : onLoadListeners) {
+                onLoadListener.onTreeLoaded(tree);
+            }
+        }
+    }
 
+    public static boolean isValidVersion(@NotNull File file) throws Exception {
         if(file.exists()) {
-            treeVersion = null;
+            @Nullable String cachedTreeVersion = InvTweaksItemTreeCache.readTreeVersion(
+                    InvTweaksConst.CONFIG_TREE_CACHE_FILE, InvTweaksItemTreeCache.computeHash(file));
+            if(cachedTreeVersion != null) {
+                return InvTweaksConst.TREE_VERSION.equals(cachedTreeVersion);
+            }
+
             SAXParserFactory parserFactory = SAXParserFactory.newInstance();
             SAXParser parser = parserFactory.newSAXParser();
 
@@ -84,21 +123,24 @@ public class InvTweaksItemTreeLoader extends DefaultHandler {
         }
     }
 
-    public synchronized static void addOnLoadListener(@NotNull IItemTreeListener listener) {
-        onLoadListeners.add(listener);
-        if(treeLoaded) {
-            // Late event triggering
-            listener.onTreeLoaded(tree);
+    public static void addOnLoadListener(@NotNull IItemTreeListener listener) {
+        synchronized(onLoadListeners) {
+            onLoadListeners.add(listener);
+            @Nullable InvTweaksItemTree tree = publishedTree;
+            if(tree != null) {
+                // Late event triggering
+                listener.onTreeLoaded(tree);
+            }
         }
     }
 
-    public synchronized static boolean removeOnLoadListener(IItemTreeListener listener) {
+    public static boolean removeOnLoadListener(IItemTreeListener listener) {
         return onLoadListeners.remove(listener);
     }
 
 
     @Override
-    public synchronized void startElement(String uri, String localName, String name, @NotNull Attributes attributes)
+    public void startElement(String uri, String localName, String name, @NotNull Attributes attributes)
             throws SAXException {
 
         String rangeDMinAttr = attributes.getValue(ATTR_RANGE_DMIN);
@@ -116,9 +158,12 @@ public class InvTweaksItemTreeLoader extends DefaultHandler {
             if(categoryStack.isEmpty()) {
                 // Root category
                 tree.setRootCategory(new InvTweaksItemTreeCategory(name));
+                record(() -> cache.setRootCategory(name));
             } else {
                 // Normal category
-                tree.addCategory(categoryStack.getLast(), new InvTweaksItemTreeCategory(name));
+                String parentCategory = categoryStack.getLast();
+                tree.addCategory(parentCategory, new InvTweaksItemTreeCategory(name));
+                record(() -> cache.addCategory(parentCategory, name));
             }
 
             // Handle damage ranges
@@ -126,10 +171,10 @@ public class InvTweaksItemTreeLoader extends DefaultHandler {
                 String id = attributes.getValue(ATTR_ID);
                 int rangeDMin = Integer.parseInt(rangeDMinAttr);
                 int rangeDMax = Integer.parseInt(attributes.getValue(ATTR_RANGE_DMAX));
-                for(int damage = rangeDMin; damage <= rangeDMax; damage++) {
-                    tree.addItem(name, new InvTweaksItemTreeItem((name + id + "-" + damage), id, damage, null,
-                            itemOrder++));
-                }
+                int order = itemOrder;
+                itemOrder += rangeDMax - rangeDMin + 1;
+                tree.addItem(name, new InvTweaksItemTreeRangeItem(name, id, rangeDMin, rangeDMax, order));
+                record(() -> cache.addRange(name, id, rangeDMin, rangeDMax, order));
             }
 
             categoryStack.add(name);
@@ -151,15 +196,32 @@ public class InvTweaksItemTreeLoader extends DefaultHandler {
             if(attributes.getValue(ATTR_DAMAGE) != null) {
                 damage = Integer.parseInt(attributes.getValue(ATTR_DAMAGE));
             }
-            tree.addItem(categoryStack.getLast(),
-                    new InvTweaksItemTreeItem(name, id, damage, extraData, itemOrder++));
+            addItem(categoryStack.getLast(), name, id, damage, extraData);
         } else if(oreDictNameAttr != null) {
-            tree.registerOre(categoryStack.getLast(), name, oreDictNameAttr, itemOrder++);
+            String category = categoryStack.getLast();
+            int order = itemOrder++;
+            tree.registerOre(category, name, oreDictNameAttr, order);
+            record(() -> cache.registerOre(category, name, oreDictNameAttr, order));
+        }
+    }
+
+    private void addItem(String category, String name, String id, int damage,
+                                @Nullable NBTTagCompound extraData) throws SAXException {
+        int order = itemOrder++;
+        tree.addItem(category, new InvTweaksItemTreeItem(name, id, damage, extraData, order));
+        record(() -> cache.addItem(category, name, id, damage, extraData, order));
+    }
+
+    private static void record(@NotNull CacheOperation operation) throws SAXException {
+        try {
+            operation.run();
+        } catch(IOException e) {
+            throw new SAXException(e);
         }
     }
 
     @Override
-    public synchronized void endElement(String uri, String localName, @NotNull String name) throws SAXException {
+    public void endElement(String uri, String localName, @NotNull String name) throws SAXException {
         if(!categoryStack.isEmpty() && name.equals(categoryStack.getLast())) {
             categoryStack.removeLast();
         }
@@ -180,6 +242,10 @@ public class InvTweaksItemTreeLoader extends DefaultHandler {
         InvTweaks.log.fatal("Tree XML Fatal Error: ", e);
     }
 
+    private interface CacheOperation {
+        void run() throws IOException;
+    }
+
     private static class VersionLoader extends DefaultHandler {
         @Nullable
         String version;
@@ -0,0 +1,93 @@
+package invtweaks;
+
+import invtweaks.api.IItemTreeCategory;
+import invtweaks.api.IItemTreeItem;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * A range of damage values of the same item, as defined by the dmin/dmax attributes of the item tree. Stands for one
+ * item per damage value, named after the category, the ID and the damage value, and ordered by damage value.
+ */
+public class InvTweaksItemTreeRangeItem extends InvTweaksItemTreeItem {
+
+    @NotNull
+    private final String namePrefix;
+    private final int minDamage;
+    private final int maxDamage;
+    @Nullable
+    private IItemTreeCategory category = null;
+
+    /**
+     * @param categoryName_ The name of the category defining the range
+     * @param id_           The item ID
+     * @param minDamage_    The lowest damage value of the range
+     * @param maxDamage_    The highest damage value of the range
+     * @param order_        The order of the lowest damage value, the next ones following
+     */
+    public InvTweaksItemTreeRangeItem(String categoryName_, String id_, int minDamage_, int maxDamage_, int order_) {
+        super(categoryName_ + id_ + "-" + minDamage_ + ".." + maxDamage_, id_, minDamage_, null, order_);
+        namePrefix = categoryName_ + id_ + "-";
+        minDamage = minDamage_;
+        maxDamage = maxDamage_;
+    }
+
+    @NotNull
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    public int getMinDamage() {
+        return minDamage;
+    }
+
+    public int getMaxDamage() {
+        return maxDamage;
+    }
+
+    /**
+     * @return The number of damage values (hence of orders) taken by the range
+     */
+    public int getSize() {
+        return maxDamage - minDamage + 1;
+    }
+
+    public boolean containsDamage(int damage) {
+        return damage >= minDamage && damage <= maxDamage;
+    }
+
+    /**
+     * @return The item standing for the given damage value of the range, which must be in the range
+     */
+    @NotNull
+    public InvTweaksItemTreeItem getItem(int damage) {
+        @NotNull InvTweaksItemTreeItem item = new InvTweaksItemTreeItem(namePrefix + damage, getId(), damage, null,
+                getOrder() + damage - minDamage);
+        item.addCategories(getCategories());
+        return item;
+    }
+
+    @Nullable
+    IItemTreeCategory getCategory() {
+        return category;
+    }
+
+    void setCategory(@Nullable IItemTreeCategory category_) {
+        category = category_;
+    }
+
+    /**
+     * Same as for the items of the range: "o" must have the same ID and a damage value in the range (there is no extra
+     * data to match).
+     */
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if(!(o instanceof IItemTreeItem)) {
+            return false;
+        }
+        @NotNull IItemTreeItem item = (IItemTreeItem) o;
+        return Objects.equals(getId(), item.getId()) && containsDamage(item.getDamage());
+    }
+}
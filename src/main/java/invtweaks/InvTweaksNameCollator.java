@@ -0,0 +1,62 @@
+package invtweaks;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.resources.Language;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Orders custom stack names according to the language the game is set to. Names that the collator can't tell apart
+ * are ordered as plain strings, so that the order stays total.
+ * <p>
+ * Collation keys are cached by name for the lifetime of the instance, which should be one sort or batch of
+ * comparisons. Not thread-safe, but instances can be created on any thread.
+ */
+public class InvTweaksNameCollator {
+
+    @NotNull
+    private final Collator collator;
+    @NotNull
+    private final Map<String, CollationKey> keys = new HashMap<>();
+
+    public InvTweaksNameCollator() {
+        collator = Collator.getInstance(getLocale());
+    }
+
+    @NotNull
+    private static Locale getLocale() {
+        @Nullable Minecraft mc = Minecraft.getMinecraft();
+        @Nullable Language language = (mc != null && mc.getLanguageManager() != null) ?
+                mc.getLanguageManager().getCurrentLanguage() : null;
+        if(language == null) {
+            return Locale.getDefault();
+        }
+        // Language codes are like "en_us"
+        @NotNull String[] code = language.getLanguageCode().split("_", 2);
+        return (code.length == 2) ? new Locale(code[0], code[1].toUpperCase(Locale.ROOT)) : new Locale(code[0]);
+    }
+
+    @NotNull
+    public CollationKey getKey(@NotNull String name) {
+        @Nullable CollationKey key = keys.get(name);
+        if(key == null) {
+            key = collator.getCollationKey(name);
+            keys.put(name, key);
+        }
+        return key;
+    }
+
+    public int compare(@NotNull String name1, @NotNull String name2) {
+        if(name1.equals(name2)) {
+            return 0;
+        }
+        int result = getKey(name1).compareTo(getKey(name2));
+        return (result != 0) ? result : name1.compareTo(name2);
+    }
+}
@@ -0,0 +1,159 @@
+package invtweaks;
+
+import invtweaks.container.ContainerSectionManager;
+import net.minecraft.item.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+/**
+ * Comparison keys of the stacks of a section (or of a list), computed once per stack so that comparing two slots only
+ * compares integers. Gives the same order as {@link InvTweaks#compareItems(ItemStack, ItemStack, int, int)}, the keyword
+ * orders being passed along the same way.
+ * <p>
+ * Keys must be updated whenever the contents of a slot change. Instances aren't thread-safe, but don't depend on
+ * anything else than the stacks they're made for.
+ */
+public class InvTweaksSortKeys {
+
+    @NotNull
+    private final IntFunction<ItemStack> stacks;
+    private final boolean invertToolDamage;
+
+    @NotNull
+    private final boolean[] empty;
+    @NotNull
+    private final int[] itemRanks;
+    @NotNull
+    private final int[] nameRanks;
+    @NotNull
+    private final long[] enchantments;
+    @NotNull
+    private final int[] damages;
+    @NotNull
+    private final int[] counts;
+
+    @NotNull
+    private final InvTweaksNameCollator nameCollator = new InvTweaksNameCollator();
+
+    /**
+     * Alphabetical ranks of the registry names and display names found in the section, display names being ordered
+     * according to the game language
+     */
+    @NotNull
+    private final Map<String, Integer> itemRanksByName = new TreeMap<>();
+    @NotNull
+    private final Map<String, Integer> nameRanksByName = new TreeMap<>(nameCollator::compare);
+    @NotNull
+    private final InvTweaksEnchantmentCache enchantmentCache = new InvTweaksEnchantmentCache();
+
+    public InvTweaksSortKeys(@NotNull ContainerSectionManager containerMgr, boolean invertToolDamage_) {
+        this(containerMgr::getItemStack, containerMgr.getSize(), invertToolDamage_);
+    }
+
+    /**
+     * Keys of the stacks of a list, by index. The list must not change afterwards.
+     */
+    public InvTweaksSortKeys(@NotNull List<ItemStack> stacks_, boolean invertToolDamage_) {
+        this(stacks_::get, stacks_.size(), invertToolDamage_);
+    }
+
+    private InvTweaksSortKeys(@NotNull IntFunction<ItemStack> stacks_, int size, boolean invertToolDamage_) {
+        stacks = stacks_;
+        invertToolDamage = invertToolDamage_;
+
+        empty = new boolean[size];
+        itemRanks = new int[size];
+        nameRanks = new int[size];
+        enchantments = new long[size];
+        damages = new int[size];
+        counts = new int[size];
+
+        for(int i = 0; i < size; i++) {
+            @NotNull ItemStack stack = stacks.apply(i);
+            if(!stack.isEmpty()) {
+                itemRanksByName.put(stack.getItem().getRegistryName().toString(), 0);
+                if(stack.hasDisplayName()) {
+                    nameRanksByName.put(stack.getDisplayName(), 0);
+                }
+            }
+        }
+        updateRanks();
+    }
+
+    private void updateRanks() {
+        int rank = 0;
+        for(@NotNull Map.Entry<String, Integer> entry : itemRanksByName.entrySet()) {
+            entry.setValue(rank++);
+        }
+        rank = 1; // 0 is for stacks without a name
+        for(@NotNull Map.Entry<String, Integer> entry : nameRanksByName.entrySet()) {
+            entry.setValue(rank++);
+        }
+        for(int i = 0; i < empty.length; i++) {
+            update(i);
+        }
+    }
+
+    /**
+     * Computes the key of the stack currently in the given slot.
+     */
+    public void update(int slot) {
+        @NotNull ItemStack stack = stacks.apply(slot);
+        empty[slot] = stack.isEmpty();
+        if(empty[slot]) {
+            return;
+        }
+
+        // Names are ranked upfront, moving stacks around doesn't bring new ones
+        Integer itemRank = itemRanksByName.get(stack.getItem().getRegistryName().toString());
+        Integer nameRank = stack.hasDisplayName() ? nameRanksByName.get(stack.getDisplayName()) : Integer.valueOf(0);
+        if(itemRank == null || nameRank == null) {
+            itemRanksByName.put(stack.getItem().getRegistryName().toString(), 0);
+            if(stack.hasDisplayName()) {
+                nameRanksByName.put(stack.getDisplayName(), 0);
+            }
+            updateRanks();
+            return;
+        }
+        itemRanks[slot] = itemRank;
+        nameRanks[slot] = nameRank;
+
+        // Most enchantments first, then by the strongest enchantment: highest ID first, then highest level
+        enchantments[slot] = -enchantmentCache.getSummary(stack);
+
+        // Most damaged tools first unless inverted, then biggest stacks first
+        damages[slot] = (stack.isItemStackDamageable() && !invertToolDamage) ? -stack.getItemDamage() : stack
+                .getItemDamage();
+        counts[slot] = -stack.getCount();
+    }
+
+    /**
+     * @return A negative number if the stack in slot i goes before the one in slot j, a positive one if it goes after,
+     * 0 if they can't be told apart
+     */
+    public int compare(int i, int j, int orderI, int orderJ) {
+        if(empty[i] && empty[j]) {
+            return 0;
+        } else if(empty[j]) {
+            return -1;
+        } else if(empty[i] || orderI == -1) {
+            return 1;
+        } else if(orderI != orderJ) {
+            return Integer.compare(orderI, orderJ);
+        } else if(itemRanks[i] != itemRanks[j]) {
+            return Integer.compare(itemRanks[i], itemRanks[j]);
+        } else if(nameRanks[i] != nameRanks[j]) {
+            return Integer.compare(nameRanks[i], nameRanks[j]);
+        } else if(enchantments[i] != enchantments[j]) {
+            return Long.compare(enchantments[i], enchantments[j]);
+        } else if(damages[i] != damages[j]) {
+            return Integer.compare(damages[i], damages[j]);
+        } else {
+            return Integer.compare(counts[i], counts[j]);
+        }
+    }
+}
@@ -22,6 +22,7 @@
 
 package invtweaks.api;
 
+import net.minecraft.item.Item;
 import net.minecraft.nbt.NBTTagCompound;
 
 import java.util.Collection;
@@ -48,6 +49,8 @@ public interface IItemTree {
 
     List<IItemTreeItem> getItems(String id, int damage, NBTTagCompound extra);
 
+    List<IItemTreeItem> getItems(Item item, int damage, NBTTagCompound extra);
+
     List<IItemTreeItem> getItems(String id, int damage);
 
     List<IItemTreeItem> getItems(String name);
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2013 Andrew Crocker
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package invtweaks.api;
+
+import java.util.List;
+
+/**
+ * Clicks a sort would make to reach the sorted layout of a section, as computed without touching the container.
+ */
+@SuppressWarnings("unused")
+public interface ISortingPlan {
+    /**
+     * Clicks of the plan, grouped in steps that start and end with nothing held. Each click is the index of the slot
+     * in the section, shifted left by one, the lowest bit being set for right clicks.
+     */
+    List<int[]> getSteps();
+
+    int getClickCount();
+
+    /**
+     * @return The number of clicks putting a stack down while picking up the one in the slot, when moving stacks
+     * around without going through an empty slot
+     */
+    int getSwapCount();
+
+    /**
+     * @return The number of times items are moved between stacks of the same item
+     */
+    int getTransferCount();
+
+    /**
+     * @return The number of stacks moved to another slot
+     */
+    int getMovedStackCount();
+
+    /**
+     * @return The number of packets sent to the server, one per click
+     */
+    int getPacketCount();
+
+    /**
+     * @return The number of server ticks the clicks are spread over
+     */
+    int getEstimatedTicks();
+}
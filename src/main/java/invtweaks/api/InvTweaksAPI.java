@@ -25,6 +25,8 @@ package invtweaks.api;
 import invtweaks.api.container.ContainerSection;
 import net.minecraft.item.ItemStack;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
 
 /**
  * Interface to access functions exposed by Inventory Tweaks
@@ -69,8 +71,36 @@ public interface InvTweaksAPI {
      */
     int compareItems(@Nonnull ItemStack i, @Nonnull ItemStack j);
 
+    /**
+     * Compute sort keys for a batch of stacks, each key being extracted once: comparing two keys gives the same order
+     * as {@link #compareItems(ItemStack, ItemStack)}. Keys are only meaningful within the same batch.
+     * Can be called from any thread, as long as the stacks aren't modified meanwhile.
+     *
+     * @param stacks
+     * @return The keys of the stacks, by index
+     */
+    @Nonnull
+    long[] computeSortKeys(@Nonnull List<ItemStack> stacks);
+
+    /**
+     * Sort a list of stacks in place using the default (non-rule based) algorithm, like compareItems would.
+     * Can be called from any thread, as long as the stacks aren't modified meanwhile.
+     *
+     * @param stacks A modifiable list
+     */
+    void sortStacks(@Nonnull List<ItemStack> stacks);
+
     /**
      * Initiate a sort as if the player had clicked on a sorting button or pressed the sort key.
      */
     void sort(ContainerSection section, SortingMethod method);
+
+    /**
+     * Work out the clicks a sort would make, without touching the container.
+     *
+     * @return The planned clicks and their cost, or null if the sort couldn't be planned (it would then move stacks
+     * one by one)
+     */
+    @Nullable
+    ISortingPlan simulateSort(ContainerSection section, SortingMethod method);
 }
@@ -0,0 +1,752 @@
+package invtweaks.container;
+
+import invtweaks.InvTweaks;
+import invtweaks.api.ISortingPlan;
+import net.minecraft.inventory.Slot;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Sequence of clicks turning the current contents of a section into a target layout.
+ * <p>
+ * The plan is worked out in two phases. First, stacks of the same item are poured into each other until the stack
+ * sizes of every item match the target, regardless of their positions. Then the stacks are moved to their target slots
+ * by following the cycles of the resulting permutation while carrying one stack on the cursor, so that moving k stacks
+ * takes k + 1 clicks instead of 2k or 3k. Every click is simulated along the way with the vanilla pickup rules, and no
+ * plan is returned if the simulated result doesn't match the target.
+ * <p>
+ * Clicks are grouped in steps that start and end with an empty hand.
+ */
+public class RearrangementPlan implements ISortingPlan {
+
+    private static final Logger log = InvTweaks.log;
+    private static final int MAX_TRANSFER_CANDIDATES = 32;
+
+    @NotNull
+    private final List<int[]> steps = new ArrayList<>();
+    private int clickCount = 0;
+    private int swapCount = 0;
+    private int transferCount = 0;
+    private int movedStackCount = 0;
+    private int clicksPerTick = 0;
+
+    private RearrangementPlan() {
+    }
+
+    /**
+     * @param containerMgr The section to rearrange, in its current state
+     * @param target       The wanted contents of the section. Must hold the same items as the section.
+     * @return The plan, or null if the target can't be reached with plain clicks
+     */
+    @Nullable
+    public static RearrangementPlan compute(@NotNull ContainerSectionManager containerMgr, @NotNull ItemStack[] target) {
+        int size = containerMgr.getSize();
+        if(target.length != size) {
+            return null;
+        }
+
+        @Nullable Simulation sim = Simulation.of(containerMgr);
+        if(sim == null) {
+            return null;
+        }
+
+        @NotNull RearrangementPlan plan = new RearrangementPlan();
+        return plan.build(sim, target) ? plan : null;
+    }
+
+    private static int click(int index, boolean rightClick) {
+        return (index << 1) | (rightClick ? 1 : 0);
+    }
+
+    /**
+     * @return The given clicks, with the middle one repeated the given amount of times
+     */
+    @NotNull
+    private static int[] clicks(int first, int repeated, int repeat, int last) {
+        @NotNull int[] clicks = new int[repeat + 2];
+        clicks[0] = first;
+        Arrays.fill(clicks, 1, repeat + 1, repeated);
+        clicks[repeat + 1] = last;
+        return clicks;
+    }
+
+    /**
+     * Same item, damage and tags: such stacks merge instead of swapping when clicked onto each other.
+     */
+    private static boolean isSameItem(@NotNull ItemStack stack1, @NotNull ItemStack stack2) {
+        return stack1.getItem() == stack2.getItem() && stack1.getMetadata() == stack2.getMetadata()
+                && ItemStack.areItemStackTagsEqual(stack1, stack2);
+    }
+
+    private boolean build(@NotNull Simulation sim, @NotNull ItemStack[] target) {
+        int size = target.length;
+
+        // Group stacks by item, and make sure no item appears or disappears
+        @NotNull ItemGroups groups = new ItemGroups();
+        @NotNull int[] currentGroups = new int[size];
+        @NotNull int[] targetGroups = new int[size];
+        for(int i = 0; i < size; i++) {
+            currentGroups[i] = groups.get(sim.stacks[i]);
+            targetGroups[i] = groups.get(target[i]);
+            if(!sim.stacks[i].isEmpty() && sim.stacks[i].getCount() > sim.getStackLimit(i, sim.stacks[i])
+                    || !target[i].isEmpty() && target[i].getCount() > sim.getStackLimit(i, target[i])) {
+                return false; // Oversized stacks can't be put down in one click
+            }
+        }
+        @NotNull int[] totals = new int[groups.size()];
+        for(int i = 0; i < size; i++) {
+            if(currentGroups[i] != -1) {
+                totals[currentGroups[i]] += sim.stacks[i].getCount();
+            }
+            if(targetGroups[i] != -1) {
+                totals[targetGroups[i]] -= target[i].getCount();
+            }
+        }
+        for(int total : totals) {
+            if(total != 0) {
+                log.warn("Sorting plan target doesn't hold the same items as the container.");
+                return false;
+            }
+        }
+
+        if(!planStackSizes(sim, target, groups.size(), currentGroups, targetGroups)
+                || !planPositions(sim, target, groups)) {
+            log.warn("Sorting plan couldn't be completed.");
+            return false;
+        }
+
+        for(int i = 0; i < size; i++) {
+            if(!ItemStack.areItemStacksEqual(sim.stacks[i], target[i])) {
+                log.warn("Sorting plan doesn't lead to the expected layout.");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * First phase: pours stacks of the same item into each other until their sizes match the target ones. Stacks
+     * already in a slot meant for the same item keep their slot, other stacks are paired with the target stacks of
+     * closest size, and the remaining ones are emptied into the others.
+     */
+    private boolean planStackSizes(@NotNull Simulation sim, @NotNull ItemStack[] target, int groupCount,
+                                   @NotNull int[] currentGroups, @NotNull int[] targetGroups) {
+        int size = target.length;
+
+        // Wanted size of each current stack, -1 if the slot is not involved
+        @NotNull int[] wantedSizes = new int[size];
+        Arrays.fill(wantedSizes, -1);
+        @NotNull List<List<Integer>> newStackSizes = new ArrayList<>(groupCount);
+
+        // Stacks of each item, and the slots meant for it and the stacks to move for it
+        @NotNull List<List<Integer>> members = new ArrayList<>(groupCount);
+        @NotNull List<List<Integer>> pendingTargets = new ArrayList<>(groupCount);
+        @NotNull List<List<Integer>> pendingSources = new ArrayList<>(groupCount);
+        for(int group = 0; group < groupCount; group++) {
+            members.add(new ArrayList<>());
+            pendingTargets.add(new ArrayList<>());
+            pendingSources.add(new ArrayList<>());
+        }
+        for(int i = 0; i < size; i++) {
+            if(currentGroups[i] != -1) {
+                members.get(currentGroups[i]).add(i);
+            }
+            if(targetGroups[i] != -1 && targetGroups[i] == currentGroups[i]) {
+                wantedSizes[i] = target[i].getCount();
+            } else {
+                if(targetGroups[i] != -1) {
+                    pendingTargets.get(targetGroups[i]).add(i);
+                }
+                if(currentGroups[i] != -1) {
+                    pendingSources.get(currentGroups[i]).add(i);
+                }
+            }
+        }
+
+        for(int group = 0; group < groupCount; group++) {
+            // Pair stacks that already have the right size
+            @NotNull Map<Integer, Deque<Integer>> sourcesBySize = new HashMap<>();
+            for(int source : pendingSources.get(group)) {
+                sourcesBySize.computeIfAbsent(sim.stacks[source].getCount(), k -> new ArrayDeque<>()).add(source);
+            }
+            @NotNull List<Integer> targets = new ArrayList<>();
+            for(int slot : pendingTargets.get(group)) {
+                @Nullable Deque<Integer> candidates = sourcesBySize.get(target[slot].getCount());
+                if(candidates != null && !candidates.isEmpty()) {
+                    wantedSizes[candidates.poll()] = target[slot].getCount();
+                } else {
+                    targets.add(slot);
+                }
+            }
+            @NotNull List<Integer> sources = new ArrayList<>();
+            for(int source : pendingSources.get(group)) {
+                if(wantedSizes[source] == -1) {
+                    sources.add(source);
+                }
+            }
+
+            // Pair the others by decreasing size, the extra stacks being emptied or created
+            sources.sort((a, b) -> sim.stacks[b].getCount() - sim.stacks[a].getCount());
+            targets.sort((a, b) -> target[b].getCount() - target[a].getCount());
+            @NotNull List<Integer> newSizes = new ArrayList<>();
+            for(int j = 0; j < Math.max(sources.size(), targets.size()); j++) {
+                if(j >= targets.size()) {
+                    wantedSizes[sources.get(j)] = 0;
+                } else if(j >= sources.size()) {
+                    newSizes.add(target[targets.get(j)].getCount());
+                } else {
+                    wantedSizes[sources.get(j)] = target[targets.get(j)].getCount();
+                }
+            }
+            newStackSizes.add(newSizes);
+        }
+
+        // Items that only need to be merged go first, to free slots for the ones that need more stacks
+        @Nullable EmptySlots emptySlots = null;
+        for(int pass = 0; pass < 2; pass++) {
+            for(int group = 0; group < groupCount; group++) {
+                @NotNull List<Integer> newSizes = newStackSizes.get(group);
+                if(newSizes.isEmpty() != (pass == 0)) {
+                    continue;
+                }
+                for(int newSize : newSizes) {
+                    // Slots are only emptied by the items of the first pass
+                    if(emptySlots == null) {
+                        emptySlots = new EmptySlots(sim, target, wantedSizes, targetGroups);
+                    }
+                    int emptySlot = emptySlots.take(group, newSize);
+                    if(emptySlot == -1) {
+                        return false;
+                    }
+                    wantedSizes[emptySlot] = newSize;
+                    currentGroups[emptySlot] = group;
+                    members.get(group).add(emptySlot);
+                }
+                if(!planTransfers(sim, members.get(group), wantedSizes)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean planTransfers(@NotNull Simulation sim, @NotNull List<Integer> members, @NotNull int[] wantedSizes) {
+        // Fill the stack missing the most items first
+        @NotNull PriorityQueue<Integer> sinks = new PriorityQueue<>((a, b) -> {
+            int result = (wantedSizes[b] - sim.stacks[b].getCount()) - (wantedSizes[a] - sim.stacks[a].getCount());
+            return (result != 0) ? result : Integer.compare(a, b);
+        });
+        @NotNull List<Integer> sources = new ArrayList<>();
+        for(int i : members) {
+            if(wantedSizes[i] - sim.stacks[i].getCount() > 0) {
+                sinks.add(i);
+            } else if(wantedSizes[i] != -1 && sim.stacks[i].getCount() - wantedSizes[i] > 0) {
+                sources.add(i);
+            }
+        }
+
+        while(!sinks.isEmpty()) {
+            int sink = sinks.poll();
+            int missing = wantedSizes[sink] - sim.stacks[sink].getCount();
+
+            // Take from the stack that costs the less clicks, moving as many items as possible on a tie. Only the
+            // first sources are looked at, for items spread over a huge amount of stacks.
+            @Nullable int[] bestClicks = null;
+            int bestAmount = 0, bestSource = -1;
+            for(int k = 0; k < Math.min(sources.size(), MAX_TRANSFER_CANDIDATES); k++) {
+                int i = sources.get(k);
+                int amount = Math.min(sim.stacks[i].getCount() - wantedSizes[i], missing);
+                @NotNull int[] transferClicks = getTransferClicks(sim, i, sink, amount);
+                if(bestClicks == null || transferClicks.length < bestClicks.length
+                        || transferClicks.length == bestClicks.length
+                        && (amount > bestAmount || amount == bestAmount && i < sources.get(bestSource))) {
+                    bestClicks = transferClicks;
+                    bestAmount = amount;
+                    bestSource = k;
+                }
+            }
+            if(bestClicks == null || !addStep(sim, bestClicks)
+                    || wantedSizes[sink] - sim.stacks[sink].getCount() != missing - bestAmount) {
+                return false;
+            }
+            transferCount++;
+
+            int source = sources.get(bestSource);
+            if(sim.stacks[source].getCount() == wantedSizes[source]) {
+                sources.set(bestSource, sources.get(sources.size() - 1));
+                sources.remove(sources.size() - 1);
+            }
+            if(missing > bestAmount) {
+                sinks.add(sink);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The shortest click sequence moving the given amount of items from one stack to another (empty or of the
+     * same item, with enough room)
+     */
+    @NotNull
+    private int[] getTransferClicks(@NotNull Simulation sim, int from, int to, int amount) {
+        int count = sim.stacks[from].getCount();
+        int room = sim.getStackLimit(to, sim.stacks[from]) - sim.stacks[to].getCount();
+        int half = (count + 1) / 2;
+
+        // Whole stack
+        if(amount == count) {
+            return new int[]{click(from, false), click(to, false)};
+        }
+
+        @NotNull List<int[]> options = new ArrayList<>();
+        // Fill the destination up, put the rest back
+        if(amount == room && !sim.stacks[to].isEmpty()) {
+            options.add(clicks(click(from, false), click(to, false), 1, click(from, false)));
+        }
+        // Drop items one by one in the destination, put the rest back
+        options.add(clicks(click(from, false), click(to, true), amount, click(from, false)));
+        // Put items back one by one, drop the rest in the destination
+        options.add(clicks(click(from, false), click(from, true), count - amount, click(to, false)));
+        // Take half the stack, put items back one by one, drop the rest in the destination
+        if(amount <= half) {
+            options.add(clicks(click(from, true), click(from, true), half - amount, click(to, false)));
+        }
+
+        @NotNull int[] best = options.get(0);
+        for(@NotNull int[] option : options) {
+            if(option.length < best.length) {
+                best = option;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Second phase: moves the stacks to their target slots. Stacks that already have the right size in the right slot
+     * don't move, the others follow the paths and cycles of the permutation.
+     */
+    private boolean planPositions(@NotNull Simulation sim, @NotNull ItemStack[] target,
+                                  @NotNull ItemGroups groups) {
+        int size = target.length;
+
+        // Stacks that have to move, by item and size
+        @NotNull boolean[] inPlace = new boolean[size];
+        @NotNull Map<Long, Deque<Integer>> movingStacks = new HashMap<>();
+        for(int i = 0; i < size; i++) {
+            @NotNull ItemStack stack = sim.stacks[i];
+            inPlace[i] = stack.isEmpty() ? target[i].isEmpty() : ItemStack.areItemStacksEqual(stack, target[i]);
+            if(!inPlace[i] && !stack.isEmpty()) {
+                movingStacks.computeIfAbsent(getStackKey(groups, stack), k -> new ArrayDeque<>()).add(i);
+            }
+        }
+
+        // Slot each target stack comes from
+        @NotNull int[] sources = new int[size];
+        Arrays.fill(sources, -1);
+        for(int i = 0; i < size; i++) {
+            if(!inPlace[i] && !target[i].isEmpty()) {
+                @Nullable Deque<Integer> candidates = movingStacks.get(getStackKey(groups, target[i]));
+                if(candidates == null || candidates.isEmpty()) {
+                    return false;
+                }
+                sources[i] = candidates.poll();
+            }
+        }
+
+        @NotNull boolean[] visited = new boolean[size];
+
+        // Paths: start from the stack that leaves its slot empty, end in an empty slot
+        for(int i = 0; i < size; i++) {
+            if(sources[i] != -1 && sim.stacks[i].isEmpty()) {
+                @NotNull List<Integer> path = new ArrayList<>();
+                for(int slot = i; slot != -1; slot = sources[slot]) {
+                    if(visited[slot]) {
+                        return false;
+                    }
+                    visited[slot] = true;
+                    path.add(slot);
+                }
+                @NotNull int[] clicks = new int[path.size()];
+                for(int j = 0; j < clicks.length; j++) {
+                    clicks[j] = click(path.get(clicks.length - 1 - j), false);
+                }
+                if(!addStep(sim, clicks)) {
+                    return false;
+                }
+                movedStackCount += path.size() - 1;
+            }
+        }
+
+        // Cycles: pick up one stack, put each stack in place of the next one, and the last one in the first slot
+        for(int i = 0; i < size; i++) {
+            if(sources[i] != -1 && !visited[i]) {
+                @NotNull List<Integer> cycle = new ArrayList<>();
+                int slot = i;
+                do {
+                    if(slot == -1 || visited[slot]) {
+                        return false;
+                    }
+                    visited[slot] = true;
+                    cycle.add(slot);
+                    slot = sources[slot];
+                } while(slot != i);
+
+                @NotNull int[] clicks = new int[cycle.size() + 1];
+                clicks[0] = click(i, false);
+                for(int j = 1; j < cycle.size(); j++) {
+                    clicks[j] = click(cycle.get(cycle.size() - j), false);
+                }
+                clicks[cycle.size()] = click(i, false);
+                if(!addStep(sim, clicks)) {
+                    return false;
+                }
+                movedStackCount += cycle.size();
+            }
+        }
+        return true;
+    }
+
+    private static long getStackKey(@NotNull ItemGroups groups, @NotNull ItemStack stack) {
+        return ((long) groups.get(stack) << 32) | stack.getCount();
+    }
+
+    /**
+     * Simulates the given clicks and adds them to the plan.
+     *
+     * @return false if a click couldn't be simulated or an item is still held afterwards
+     */
+    private boolean addStep(@NotNull Simulation sim, @NotNull int[] clicks) {
+        int swaps = sim.swaps;
+        for(int click : clicks) {
+            if(!sim.click(click >> 1, (click & 1) != 0)) {
+                return false;
+            }
+        }
+        if(!sim.cursor.isEmpty()) {
+            return false;
+        }
+        steps.add(clicks);
+        clickCount += clicks.length;
+        swapCount += sim.swaps - swaps;
+        return true;
+    }
+
+    /**
+     * Performs the clicks of the plan on the section it was computed for.
+     */
+    public void execute(@NotNull ContainerSectionManager containerMgr) {
+        for(@NotNull int[] step : steps) {
+            for(int click : step) {
+                containerMgr.click(click >> 1, (click & 1) != 0);
+            }
+        }
+    }
+
+    /**
+     * Prepares to perform the clicks of the plan a few at a time, on the section it was computed for, which must not
+     * have changed since.
+     *
+     * @return null if the section can't be simulated anymore
+     */
+    @Nullable
+    public Execution start(@NotNull ContainerSectionManager containerMgr) {
+        @Nullable Simulation sim = Simulation.of(containerMgr);
+        return (sim != null) ? new Execution(containerMgr, sim) : null;
+    }
+
+    /**
+     * Sets the amount of clicks performed per tick, 0 if they are all performed at once. Only used for the estimates.
+     */
+    public void setClicksPerTick(int clicksPerTick_) {
+        clicksPerTick = clicksPerTick_;
+    }
+
+    @NotNull
+    @Override
+    public List<int[]> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    @Override
+    public int getClickCount() {
+        return clickCount;
+    }
+
+    @Override
+    public int getSwapCount() {
+        return swapCount;
+    }
+
+    @Override
+    public int getTransferCount() {
+        return transferCount;
+    }
+
+    @Override
+    public int getMovedStackCount() {
+        return movedStackCount;
+    }
+
+    /**
+     * Every click is a window click packet, whether it goes through the vanilla controller or the server-side helper.
+     */
+    @Override
+    public int getPacketCount() {
+        return clickCount;
+    }
+
+    /**
+     * Without a click budget, all clicks are sent at once and the server handles them on its next tick.
+     */
+    @Override
+    public int getEstimatedTicks() {
+        if(clicksPerTick <= 0) {
+            return (clickCount > 0) ? 1 : 0;
+        }
+        return (clickCount + clicksPerTick - 1) / clicksPerTick;
+    }
+
+    /**
+     * Contents of the section and of the cursor, updated by clicks the same way as the vanilla containers do.
+     */
+    private static class Simulation {
+        @NotNull
+        private final Slot[] slots;
+        @NotNull
+        private final ItemStack[] stacks;
+        @NotNull
+        private ItemStack cursor = ItemStack.EMPTY;
+        private int swaps = 0;
+
+        private Simulation(@NotNull Slot[] slots_, @NotNull ItemStack[] stacks_) {
+            slots = slots_;
+            stacks = stacks_;
+        }
+
+        /**
+         * @return A simulation starting from the current contents of the section, null if a slot is missing
+         */
+        @Nullable
+        private static Simulation of(@NotNull ContainerSectionManager containerMgr) {
+            int size = containerMgr.getSize();
+            @NotNull Slot[] slots = new Slot[size];
+            @NotNull ItemStack[] stacks = new ItemStack[size];
+            for(int i = 0; i < size; i++) {
+                slots[i] = containerMgr.getSlot(i);
+                if(slots[i] == null) {
+                    return null;
+                }
+                stacks[i] = containerMgr.getItemStack(i).copy();
+            }
+            return new Simulation(slots, stacks);
+        }
+
+        private int getStackLimit(int index, @NotNull ItemStack stack) {
+            return Math.min(stack.getMaxStackSize(), slots[index].getItemStackLimit(stack));
+        }
+
+        /**
+         * @return false if the click would not have the expected effect (the slot refuses the held item)
+         */
+        private boolean click(int index, boolean rightClick) {
+            @NotNull ItemStack stack = stacks[index];
+            @NotNull Slot slot = slots[index];
+
+            if(cursor.isEmpty()) {
+                if(!stack.isEmpty()) {
+                    cursor = stack.splitStack(rightClick ? (stack.getCount() + 1) / 2 : stack.getCount());
+                }
+            } else if(!slot.isItemValid(cursor)) {
+                return false;
+            } else if(stack.isEmpty()) {
+                stacks[index] = cursor.splitStack(Math.min(rightClick ? 1 : cursor.getCount(),
+                        slot.getItemStackLimit(cursor)));
+            } else if(isSameItem(stack, cursor)) {
+                int moved = Math.min(rightClick ? 1 : cursor.getCount(), getStackLimit(index, stack) - stack.getCount());
+                if(moved > 0) {
+                    stack.grow(moved);
+                    cursor.shrink(moved);
+                }
+            } else if(cursor.getCount() <= slot.getItemStackLimit(cursor)) {
+                stacks[index] = cursor;
+                cursor = stack;
+                swaps++;
+            } else {
+                return false;
+            }
+
+            if(stacks[index].isEmpty()) {
+                stacks[index] = ItemStack.EMPTY;
+            }
+            if(cursor.isEmpty()) {
+                cursor = ItemStack.EMPTY;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Clicks of a plan being performed over several ticks. The cursor and the clicked slot are checked against the
+     * contents the plan expects before every click, so that the execution stops if the container was changed by
+     * something else in between.
+     */
+    public class Execution {
+        @NotNull
+        private final ContainerSectionManager containerMgr;
+        @NotNull
+        private final Simulation expected;
+        private int step = 0;
+        private int click = 0;
+
+        private Execution(@NotNull ContainerSectionManager containerMgr_, @NotNull Simulation expected_) {
+            containerMgr = containerMgr_;
+            expected = expected_;
+        }
+
+        public boolean isDone() {
+            return step == steps.size();
+        }
+
+        /**
+         * Performs about the given amount of clicks. Executions only stop between steps, where nothing is held, so the
+         * last step started is completed even if it goes over the budget.
+         *
+         * @return false if the section doesn't hold what the plan expects anymore, in which case an item may still be
+         * held. The execution must be dropped.
+         */
+        public boolean run(int maxClicks) {
+            for(int done = 0; (done < maxClicks || click > 0) && !isDone(); done++) {
+                @NotNull int[] clicks = steps.get(step);
+                int index = clicks[click] >> 1;
+                boolean rightClick = (clicks[click] & 1) != 0;
+                if(!isExpected(index)) {
+                    return false;
+                }
+
+                containerMgr.click(index, rightClick);
+                expected.click(index, rightClick);
+
+                if(++click == clicks.length) {
+                    step++;
+                    click = 0;
+                }
+            }
+            return true;
+        }
+
+        private boolean isExpected(int index) {
+            return ItemStack.areItemStacksEqual(InvTweaks.getInstance().getHeldStack(), expected.cursor)
+                    && ItemStack.areItemStacksEqual(containerMgr.getItemStack(index), expected.stacks[index]);
+        }
+    }
+
+    /**
+     * Distinct items of the section, looked up by item first.
+     */
+    private static class ItemGroups {
+        @NotNull
+        private final List<ItemStack> stacks = new ArrayList<>();
+        @NotNull
+        private final Map<Item, List<Integer>> groupsByItem = new IdentityHashMap<>();
+
+        /**
+         * @return The group of the given stack, a new one if the item wasn't met yet, -1 for an empty stack
+         */
+        private int get(@NotNull ItemStack stack) {
+            if(stack.isEmpty()) {
+                return -1;
+            }
+            @NotNull List<Integer> groups = groupsByItem.computeIfAbsent(stack.getItem(), k -> new ArrayList<>());
+            for(int group : groups) {
+                if(isSameItem(stacks.get(group), stack)) {
+                    return group;
+                }
+            }
+            stacks.add(stack);
+            groups.add(stacks.size() - 1);
+            return stacks.size() - 1;
+        }
+
+        private int size() {
+            return stacks.size();
+        }
+    }
+
+    /**
+     * Empty slots that new stacks can be created in. Slots emptied after it was made are not taken into account.
+     */
+    private static class EmptySlots {
+        @NotNull
+        private final Simulation sim;
+        @NotNull
+        private final int[] wantedSizes;
+        @NotNull
+        private final int[] targetGroups;
+        /**
+         * Slots meant for a stack, by item and size
+         */
+        @NotNull
+        private final Map<Long, Deque<Integer>> slotsByTarget = new HashMap<>();
+        @NotNull
+        private final int[] slots;
+        private int firstSlot = 0;
+
+        private EmptySlots(@NotNull Simulation sim_, @NotNull ItemStack[] target, @NotNull int[] wantedSizes_,
+                           @NotNull int[] targetGroups_) {
+            sim = sim_;
+            wantedSizes = wantedSizes_;
+            targetGroups = targetGroups_;
+
+            int count = 0;
+            @NotNull int[] slots_ = new int[target.length];
+            for(int i = 0; i < target.length; i++) {
+                if(isFree(i)) {
+                    slots_[count++] = i;
+                    if(targetGroups[i] != -1) {
+                        slotsByTarget.computeIfAbsent(((long) targetGroups[i] << 32) | target[i].getCount(),
+                                k -> new ArrayDeque<>()).add(i);
+                    }
+                }
+            }
+            slots = Arrays.copyOf(slots_, count);
+        }
+
+        private boolean isFree(int slot) {
+            return sim.stacks[slot].isEmpty() && wantedSizes[slot] <= 0;
+        }
+
+        /**
+         * @return An empty slot to create a new stack of the given item in, preferably where it will stay, else one
+         * not meant for the same item. -1 if there is none left.
+         */
+        private int take(int group, int newSize) {
+            @Nullable Deque<Integer> candidates = slotsByTarget.get(((long) group << 32) | newSize);
+            while(candidates != null && !candidates.isEmpty()) {
+                int slot = candidates.poll();
+                if(isFree(slot)) {
+                    return slot;
+                }
+            }
+
+            while(firstSlot < slots.length && !isFree(slots[firstSlot])) {
+                firstSlot++;
+            }
+            int anySlot = -1;
+            for(int k = firstSlot; k < slots.length; k++) {
+                if(isFree(slots[k])) {
+                    if(targetGroups[slots[k]] != group) {
+                        return slots[k];
+                    } else if(anySlot == -1) {
+                        anySlot = slots[k];
+                    }
+                }
+            }
+            return anySlot;
+        }
+    }
+}
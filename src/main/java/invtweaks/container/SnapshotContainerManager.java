@@ -0,0 +1,277 @@
+package invtweaks.container;
+
+import invtweaks.InvTweaksObfuscation;
+import invtweaks.api.container.ContainerSection;
+import net.minecraft.inventory.Container;
+import net.minecraft.inventory.Slot;
+import net.minecraft.item.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Copy of the contents of a single section of a container, on which moves and clicks are only simulated. Allows to
+ * work out the result of a sort without clicking anything.
+ * <p>
+ * Moves have the same outcome as with the {@link DirectContainerManager}: stacks are merged when they can be, and
+ * swapped otherwise. Slot restrictions are checked against the real slots.
+ */
+public class SnapshotContainerManager implements IContainerManager {
+
+    @NotNull
+    private final IContainerManager containerMgr;
+    @NotNull
+    private final ContainerSection section;
+    @NotNull
+    private final ItemStack[] stacks;
+    /**
+     * Stack held by simulated clicks. Empty when the snapshot is taken, whatever the player holds.
+     */
+    @NotNull
+    private ItemStack cursor = ItemStack.EMPTY;
+
+    public SnapshotContainerManager(@NotNull IContainerManager manager, @NotNull ContainerSection section_) {
+        containerMgr = manager;
+        section = section_;
+        stacks = new ItemStack[manager.getSize(section)];
+        refresh();
+    }
+
+    private static int getStackLimit(@NotNull Slot slot, @NotNull ItemStack stack) {
+        return Math.min(stack.getMaxStackSize(), slot.getItemStackLimit(stack));
+    }
+
+    /**
+     * Copies the current contents of the section again, dropping all simulated moves and clicks.
+     */
+    public void refresh() {
+        cursor = ItemStack.EMPTY;
+        for(int i = 0; i < stacks.length; i++) {
+            stacks[i] = containerMgr.getItemStack(section, i).copy();
+        }
+    }
+
+    /**
+     * @return A copy of the simulated contents of the section
+     */
+    @NotNull
+    public ItemStack[] getContents() {
+        @NotNull ItemStack[] contents = new ItemStack[stacks.length];
+        for(int i = 0; i < stacks.length; i++) {
+            contents[i] = stacks[i].copy();
+        }
+        return contents;
+    }
+
+    @Override
+    public boolean move(ContainerSection srcSection, int srcIndex, ContainerSection destSection, int destIndex) {
+        if(srcSection != section || destSection != section || destIndex == DROP_SLOT) {
+            return false;
+        }
+
+        @NotNull ItemStack srcStack = stacks[srcIndex];
+        @NotNull ItemStack destStack = stacks[destIndex];
+
+        if(srcStack.isEmpty()) {
+            return false;
+        } else if(srcIndex == destIndex) {
+            return true;
+        }
+
+        @Nullable Slot destSlot = getSlot(section, destIndex);
+        if(destSlot == null || !destSlot.isItemValid(srcStack)) {
+            return false;
+        }
+
+        if(destStack.isEmpty()) {
+            stacks[destIndex] = srcStack.splitStack(Math.min(srcStack.getCount(), destSlot.getItemStackLimit(srcStack)));
+        } else if(InvTweaksObfuscation.areItemsStackable(srcStack, destStack)) {
+            int moved = Math.min(srcStack.getCount(), getStackLimit(destSlot, destStack) - destStack.getCount());
+            if(moved > 0) {
+                destStack.grow(moved);
+                srcStack.shrink(moved);
+            }
+        } else {
+            @Nullable Slot srcSlot = getSlot(section, srcIndex);
+            if(srcSlot == null || !srcSlot.isItemValid(destStack)) {
+                return false;
+            }
+            stacks[srcIndex] = destStack;
+            stacks[destIndex] = srcStack;
+        }
+
+        if(stacks[srcIndex].isEmpty()) {
+            stacks[srcIndex] = ItemStack.EMPTY;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean moveSome(ContainerSection srcSection, int srcIndex, ContainerSection destSection, int destIndex,
+                            int amount) {
+        if(srcSection != section || destSection != section || destIndex == DROP_SLOT) {
+            return false;
+        }
+
+        @NotNull ItemStack source = stacks[srcIndex];
+        if(source.isEmpty() || srcIndex == destIndex) {
+            return true;
+        }
+
+        @NotNull ItemStack destination = stacks[destIndex];
+        if(!destination.isEmpty() && !InvTweaksObfuscation.areItemsStackable(source, destination)) {
+            return false;
+        }
+
+        @Nullable Slot destSlot = getSlot(section, destIndex);
+        if(destSlot == null || !destSlot.isItemValid(source)) {
+            return false;
+        }
+
+        int movedAmount = Math.min(Math.min(amount, source.getCount()),
+                getStackLimit(destSlot, source) - destination.getCount());
+        if(movedAmount > 0) {
+            if(destination.isEmpty()) {
+                stacks[destIndex] = source.splitStack(movedAmount);
+            } else {
+                destination.grow(movedAmount);
+                source.shrink(movedAmount);
+            }
+            if(source.isEmpty()) {
+                stacks[srcIndex] = ItemStack.EMPTY;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Only stacks held by simulated clicks can be put down.
+     */
+    @Override
+    public boolean putHoldItemDown(ContainerSection destSection, int destIndex) {
+        if(!cursor.isEmpty()) {
+            click(destSection, destIndex, false);
+        }
+        return cursor.isEmpty();
+    }
+
+    /**
+     * Clicks have the same outcome as in the vanilla containers, the held stack being kept in the snapshot.
+     */
+    @Override
+    public void click(ContainerSection section_, int index, boolean rightClick) {
+        if(section_ != section || index < 0 || index >= stacks.length) {
+            return;
+        }
+        @Nullable Slot slot = getSlot(section, index);
+        if(slot == null) {
+            return;
+        }
+
+        @NotNull ItemStack stack = stacks[index];
+        if(cursor.isEmpty()) {
+            if(!stack.isEmpty()) {
+                cursor = stack.splitStack(rightClick ? (stack.getCount() + 1) / 2 : stack.getCount());
+            }
+        } else if(slot.isItemValid(cursor)) {
+            if(stack.isEmpty()) {
+                stacks[index] = cursor.splitStack(Math.min(rightClick ? 1 : cursor.getCount(),
+                        slot.getItemStackLimit(cursor)));
+            } else if(InvTweaksObfuscation.areItemsStackable(cursor, stack)) {
+                int moved = Math.min(rightClick ? 1 : cursor.getCount(), getStackLimit(slot, stack) - stack.getCount());
+                if(moved > 0) {
+                    stack.grow(moved);
+                    cursor.shrink(moved);
+                }
+            } else if(cursor.getCount() <= slot.getItemStackLimit(cursor)) {
+                stacks[index] = cursor;
+                cursor = stack;
+            }
+        }
+
+        if(stacks[index].isEmpty()) {
+            stacks[index] = ItemStack.EMPTY;
+        }
+        if(cursor.isEmpty()) {
+            cursor = ItemStack.EMPTY;
+        }
+    }
+
+    @Override
+    public boolean hasSection(ContainerSection section_) {
+        return section_ == section;
+    }
+
+    @Nullable
+    @Override
+    public List<Slot> getSlots(ContainerSection section_) {
+        return (section_ == section) ? containerMgr.getSlots(section) : null;
+    }
+
+    @Override
+    public int getSize() {
+        return stacks.length;
+    }
+
+    @Override
+    public int getSize(ContainerSection section_) {
+        return (section_ == section) ? stacks.length : 0;
+    }
+
+    @Override
+    public int getFirstEmptyIndex(ContainerSection section_) {
+        if(section_ == section) {
+            for(int i = 0; i < stacks.length; i++) {
+                if(stacks[i].isEmpty()) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean isSlotEmpty(ContainerSection section_, int slot) {
+        return section_ == section && stacks[slot].isEmpty();
+    }
+
+    @Nullable
+    @Override
+    public Slot getSlot(ContainerSection section_, int index) {
+        return (section_ == section) ? containerMgr.getSlot(section, index) : null;
+    }
+
+    @Override
+    public int getSlotIndex(int slotNumber, boolean preferInventory) {
+        return containerMgr.getSlotIndex(slotNumber, preferInventory);
+    }
+
+    @Nullable
+    @Override
+    public ContainerSection getSlotSection(int slotNumber) {
+        return containerMgr.getSlotSection(slotNumber);
+    }
+
+    @NotNull
+    @Override
+    public ItemStack getItemStack(ContainerSection section_, int index) {
+        if(section_ == section && index >= 0 && index < stacks.length) {
+            return stacks[index];
+        } else {
+            return ItemStack.EMPTY;
+        }
+    }
+
+    @Override
+    public Container getContainer() {
+        return containerMgr.getContainer();
+    }
+
+    /**
+     * Nothing was clicked.
+     */
+    @Override
+    public void applyChanges() {
+    }
+}
@@ -2,6 +2,7 @@ package invtweaks.forge;
 
 import invtweaks.*;
 import invtweaks.api.IItemTreeListener;
+import invtweaks.api.ISortingPlan;
 import invtweaks.api.SortingMethod;
 import invtweaks.api.container.ContainerSection;
 import invtweaks.network.ITPacketHandlerClient;
@@ -18,6 +19,7 @@ import net.minecraft.item.ItemStack;
 import net.minecraftforge.fml.client.FMLClientHandler;
 import net.minecraftforge.fml.client.registry.ClientRegistry;
 import net.minecraftforge.fml.common.event.FMLInitializationEvent;
+import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.PlayerEvent;
@@ -25,10 +27,15 @@ import net.minecraftforge.fml.common.gameevent.TickEvent;
 import net.minecraftforge.fml.common.network.FMLNetworkEvent;
 import net.minecraftforge.fml.relauncher.Side;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.input.Keyboard;
 
+import java.util.List;
+
 public class ClientProxy extends CommonProxy {
     public static final KeyBinding KEYBINDING_SORT = new KeyBinding("invtweaks.key.sort", Keyboard.KEY_R, "invtweaks.key.category");
+    public static final KeyBinding KEYBINDING_SIMULATE_SORT = new KeyBinding("invtweaks.key.simulate", Keyboard.KEY_NONE,
+            "invtweaks.key.category");
     public boolean serverSupportEnabled = false;
     public boolean serverSupportDetected = false;
     private InvTweaks instance;
@@ -51,6 +58,15 @@ public class ClientProxy extends CommonProxy {
         instance = new InvTweaks(mc);
 
         ClientRegistry.registerKeyBinding(KEYBINDING_SORT);
+        ClientRegistry.registerKeyBinding(KEYBINDING_SIMULATE_SORT);
+    }
+
+    @Override
+    public void postInit(FMLPostInitializationEvent e) {
+        super.postInit(e);
+
+        InvTweaks.log.info(String.format("Ore dictionary handling took %.1fms (%d ore registrations)",
+                InvTweaksItemTree.getOreHandlingTime() / 1000000.0, InvTweaksItemTree.getOreEventCount()));
     }
 
     @SubscribeEvent
@@ -81,9 +97,8 @@ public class ClientProxy extends CommonProxy {
     @Override
     public void setServerHasInvTweaks(boolean hasInvTweaks) {
         serverSupportDetected = hasInvTweaks;
-        serverSupportEnabled = hasInvTweaks && !InvTweaks.getConfigManager().getConfig()
-                .getProperty(InvTweaksConfig.PROP_ENABLE_SERVER_ITEMSWAP)
-                .equals(InvTweaksConfig.VALUE_FALSE);
+        serverSupportEnabled = hasInvTweaks && InvTweaks.getConfigManager().getConfig().getSettings()
+                .isServerItemSwapEnabled();
         //InvTweaks.log.info("Server has support: " + hasInvTweaks + " support enabled: " + serverSupportEnabled);
     }
 
@@ -132,8 +147,40 @@ public class ClientProxy extends CommonProxy {
         return instance.compareItems(i, j);
     }
 
+    @NotNull
+    @Override
+    public long[] computeSortKeys(@NotNull List<ItemStack> stacks) {
+        return instance.computeSortKeys(stacks);
+    }
+
+    @Override
+    public void sortStacks(@NotNull List<ItemStack> stacks) {
+        instance.sortStacks(stacks);
+    }
+
     @Override
     public void sort(ContainerSection section, SortingMethod method) {
+        try {
+            createSortingHandler(section, method).sort();
+        } catch(Exception e) {
+            InvTweaks.logInGameErrorStatic("invtweaks.sort.chest.error", e);
+            e.printStackTrace();
+        }
+    }
+
+    @Nullable
+    @Override
+    public ISortingPlan simulateSort(ContainerSection section, SortingMethod method) {
+        try {
+            return createSortingHandler(section, method).simulate();
+        } catch(Exception e) {
+            InvTweaks.log.error("Failed to simulate sort", e);
+            return null;
+        }
+    }
+
+    @NotNull
+    private InvTweaksHandlerSorting createSortingHandler(ContainerSection section, SortingMethod method) throws Exception {
         // TODO: This seems like something useful enough to be a util method somewhere.
         Minecraft mc = FMLClientHandler.instance().getClient();
 
@@ -142,12 +189,7 @@ public class ClientProxy extends CommonProxy {
             currentContainer = ((GuiContainer) mc.currentScreen).inventorySlots;
         }
 
-        try {
-            new InvTweaksHandlerSorting(mc, InvTweaks.getConfigManager().getConfig(), section, method, InvTweaksObfuscation.getSpecialChestRowSize(currentContainer)).sort();
-        } catch(Exception e) {
-            InvTweaks.logInGameErrorStatic("invtweaks.sort.chest.error", e);
-            e.printStackTrace();
-        }
+        return new InvTweaksHandlerSorting(mc, InvTweaks.getConfigManager().getConfig(), section, method, InvTweaksObfuscation.getSpecialChestRowSize(currentContainer));
     }
 
     @Override
@@ -2,6 +2,7 @@ package invtweaks.forge;
 
 import invtweaks.InvTweaksConst;
 import invtweaks.api.IItemTreeListener;
+import invtweaks.api.ISortingPlan;
 import invtweaks.api.InvTweaksAPI;
 import invtweaks.api.SortingMethod;
 import invtweaks.api.container.ContainerSection;
@@ -26,6 +27,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.EnumMap;
+import java.util.List;
 
 public class CommonProxy implements InvTweaksAPI {
     protected static EnumMap<Side, FMLEmbeddedChannel> invtweaksChannel;
@@ -101,10 +103,26 @@ public class CommonProxy implements InvTweaksAPI {
         return 0;
     }
 
+    @NotNull
+    @Override
+    public long[] computeSortKeys(@NotNull List<ItemStack> stacks) {
+        return new long[stacks.size()];
+    }
+
+    @Override
+    public void sortStacks(@NotNull List<ItemStack> stacks) {
+    }
+
     @Override
     public void sort(ContainerSection section, SortingMethod method) {
     }
 
+    @Nullable
+    @Override
+    public ISortingPlan simulateSort(ContainerSection section, SortingMethod method) {
+        return null;
+    }
+
     @SubscribeEvent
     public void onPlayerLoggedIn(@NotNull PlayerEvent.PlayerLoggedInEvent e) {
         FMLEmbeddedChannel channel = invtweaksChannel.get(Side.SERVER);
@@ -1,6 +1,7 @@
 package invtweaks.forge;
 
 import invtweaks.api.IItemTreeListener;
+import invtweaks.api.ISortingPlan;
 import invtweaks.api.InvTweaksAPI;
 import invtweaks.api.SortingMethod;
 import invtweaks.api.container.ContainerSection;
@@ -9,6 +10,9 @@ import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.common.SidedProxy;
 import net.minecraftforge.fml.common.event.*;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
 
 /**
  * ModLoader entry point to load and configure the mod.
@@ -91,8 +95,25 @@ public class InvTweaksMod implements InvTweaksAPI {
         return proxy.compareItems(i, j);
     }
 
+    @NotNull
+    @Override
+    public long[] computeSortKeys(@NotNull List<ItemStack> stacks) {
+        return proxy.computeSortKeys(stacks);
+    }
+
+    @Override
+    public void sortStacks(@NotNull List<ItemStack> stacks) {
+        proxy.sortStacks(stacks);
+    }
+
     @Override
     public void sort(ContainerSection section, SortingMethod method) {
         proxy.sort(section, method);
     }
+
+    @Nullable
+    @Override
+    public ISortingPlan simulateSort(ContainerSection section, SortingMethod method) {
+        return proxy.simulateSort(section, method);
+    }
 }